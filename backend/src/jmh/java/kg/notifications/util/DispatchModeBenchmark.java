@@ -0,0 +1,98 @@
+package kg.notifications.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Platform vs virtual dispatch mode: time to push a burst of {@code sends} blocking sends of
+ * {@code latencyMs} each through a send {@link Bulkhead} of {@code limit} concurrent sends.
+ * <p>
+ * {@code io=blocking} sleeps like an HTTP client waiting on a socket. {@code io=pinned} sleeps inside
+ * a per-connection monitor, as Angus Mail's SMTPTransport does; on JDK 21 that pins the virtual
+ * thread's carrier, so virtual mode is then bounded by the number of carriers (CPU count).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchModeBenchmark {
+    
+    @Param({"platform", "virtual"})
+    public String mode;
+    
+    @Param({"20", "200"})
+    public int limit;
+    
+    @Param({"blocking", "pinned"})
+    public String io;
+    
+    @Param("400")
+    public int sends;
+    
+    @Param("10")
+    public long latencyMs;
+    
+    private Bulkhead bulkhead;
+    private Object[] connections;
+    
+    @Setup
+    public void setUp() {
+        bulkhead = "virtual".equals(mode)
+                ? Bulkhead.virtual("bench", limit, Integer.MAX_VALUE, Long.MAX_VALUE / 2_000_000)
+                : Bulkhead.platform("bench", limit, Integer.MAX_VALUE, Long.MAX_VALUE / 2_000_000,
+                        Thread.ofPlatform().name("bench-", 0).factory());
+        connections = new Object[limit];
+        for (int i = 0; i < limit; i++) {
+            connections[i] = new Object();
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        bulkhead.executor().shutdownNow();
+    }
+    
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(sends);
+        boolean pinned = "pinned".equals(io);
+        for (int i = 0; i < sends; i++) {
+            Object connection = connections[i % limit];
+            bulkhead.submit(1, () -> send(connection, pinned), () -> { }, done::countDown);
+        }
+        done.await();
+    }
+    
+    private void send(Object connection, boolean pinned) {
+        if (pinned) {
+            synchronized (connection) {
+                sleep();
+            }
+        } else {
+            sleep();
+        }
+    }
+    
+    private void sleep() {
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
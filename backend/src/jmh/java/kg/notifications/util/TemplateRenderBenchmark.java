@@ -0,0 +1,86 @@
+package kg.notifications.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rendering one message from a 4-variable template: the precompiled {@link CompiledTemplate} against
+ * the usual ad-hoc approaches it replaces, a regex scan per render and one String.replace per variable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateRenderBenchmark {
+    
+    private static final String SOURCE =
+            "Здравствуйте, {{name}}!\n\n" +
+            "Ваш заказ №{{orderId}} на сумму {{amount}} сом принят в обработку. " +
+            "Мы сообщим, когда курьер выедет к вам. Отследить заказ можно в личном кабинете " +
+            "или по ссылке из этого письма.\n\n" +
+            "Код подтверждения: {{ code }}\n\n" +
+            "С уважением,\nслужба поддержки";
+    
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([^{}]*?)\\s*}}");
+    
+    private CompiledTemplate compiled;
+    private Map<String, Object> values;
+    
+    @Setup
+    public void setUp() {
+        compiled = CompiledTemplate.compile(SOURCE);
+        values = Map.of("name", "Айгерим", "orderId", 482913, "amount", "1 250", "code", "7305");
+    }
+    
+    @Benchmark
+    public String compiled() {
+        return compiled.render(values);
+    }
+    
+    @Benchmark
+    public String regex() {
+        Matcher matcher = PLACEHOLDER.matcher(SOURCE);
+        StringBuilder sb = new StringBuilder(SOURCE.length() + 64);
+        while (matcher.find()) {
+            Object value = values.get(matcher.group(1));
+            if (value == null) {
+                throw new IllegalArgumentException("Не передана переменная шаблона: " + matcher.group(1));
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(value.toString()));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+    
+    @Benchmark
+    public String stringReplace() {
+        String result = SOURCE.replace("{{ code }}", "{{code}}");
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            result = result.replace("{{" + entry.getKey() + "}}", entry.getValue().toString());
+        }
+        return result;
+    }
+    
+    /**
+     * Parsing cost paid once per template version, for comparison.
+     */
+    @Benchmark
+    public CompiledTemplate compile() {
+        return CompiledTemplate.compile(SOURCE);
+    }
+}
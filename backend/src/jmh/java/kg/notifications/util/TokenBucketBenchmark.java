@@ -0,0 +1,56 @@
+package kg.notifications.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-request rate limit check: an accepted and a rejected {@link TokenBucket#tryAcquire},
+ * on one thread and with four threads hitting the same client's bucket. Run with {@code -prof gc}
+ * to confirm the check does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBucketBenchmark {
+    
+    private TokenBucket open;
+    private TokenBucket exhausted;
+    
+    @Setup
+    public void setUp() {
+        // Refills far faster than it can be drained, so every call is granted
+        open = new TokenBucket(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toNanos(1));
+        exhausted = new TokenBucket(1, TimeUnit.DAYS.toNanos(1));
+        exhausted.tryAcquire(1, System.nanoTime());
+    }
+    
+    @Benchmark
+    public long acquire() {
+        return open.tryAcquire(1, System.nanoTime());
+    }
+    
+    @Benchmark
+    public long reject() {
+        return exhausted.tryAcquire(1, System.nanoTime());
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public long acquireContended() {
+        return open.tryAcquire(1, System.nanoTime());
+    }
+}
@@ -1,9 +1,12 @@
 package kg.notifications.config;
 
+import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
 import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.info.License;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.security.SecurityScheme;
 import io.swagger.v3.oas.models.servers.Server;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -14,6 +17,8 @@ import java.util.List;
 @Configuration
 public class OpenApiConfig {
     
+    private static final String API_KEY_SCHEME = "ApiKey";
+    
     @Value("${server.port:8080}")
     private String serverPort;
     
@@ -37,6 +42,13 @@ public class OpenApiConfig {
                         new Server()
                                 .url("http://localhost:" + serverPort)
                                 .description("Local Development Server")
-                ));
+                ))
+                .components(new Components()
+                        .addSecuritySchemes(API_KEY_SCHEME, new SecurityScheme()
+                                .type(SecurityScheme.Type.APIKEY)
+                                .in(SecurityScheme.In.HEADER)
+                                .name("X-API-Key")
+                                .description("API ключ клиента")))
+                .addSecurityItem(new SecurityRequirement().addList(API_KEY_SCHEME));
     }
 }
@@ -0,0 +1,35 @@
+package kg.notifications.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+public class SchedulingConfig {
+    
+    public static final String REALTIME_SCHEDULER = "realtimeScheduler";
+    
+    /**
+     * Default scheduler of @Scheduled jobs, configured by spring.task.scheduling. Declared here
+     * because any TaskScheduler bean replaces the one Spring Boot would create.
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+    
+    /**
+     * Scheduler of the jobs that run every second or faster and must keep their pace: the retry
+     * wheel tick and the SSE flushes. A slow sweep or stats repair on the default one cannot delay them.
+     */
+    @Bean(name = REALTIME_SCHEDULER)
+    public ThreadPoolTaskScheduler realtimeScheduler(
+            @Value("${notification.scheduling.realtime-pool-size:3}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("realtime-");
+        return scheduler;
+    }
+}
@@ -1,5 +1,10 @@
 package kg.notifications.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.DispatcherType;
+import kg.notifications.security.ApiKeyAuthenticationFilter;
+import kg.notifications.service.ApiClientCache;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -8,7 +13,10 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -18,8 +26,12 @@ import java.util.List;
 
 @Configuration
 @EnableWebSecurity
+@RequiredArgsConstructor
 public class SecurityConfig {
     
+    private final ApiClientCache apiClientCache;
+    private final ObjectMapper objectMapper;
+    
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -27,9 +39,14 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Completion of SSE streams re-dispatches a request that was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         // Public endpoints
                         .requestMatchers("/api/v1/health", "/api/v1/info").permitAll()
-                        .requestMatchers("/api/v1/send", "/api/v1/status/**").permitAll()
+                        // External clients authenticate with X-API-Key
+                        .requestMatchers("/api/v1/send", "/api/v1/send/batch").hasRole("API_CLIENT")
+                        .requestMatchers("/api/v1/status/stream", "/api/v1/status/batch").hasRole("API_CLIENT")
+                        .requestMatchers("/api/v1/status/**").permitAll()
                         .requestMatchers("/api/v1/notifications/**").permitAll()
                         .requestMatchers("/api/v1/audit/**").permitAll()
                         .requestMatchers("/api/v1/admin/**").permitAll() // For now, allow all admin endpoints
@@ -39,7 +56,10 @@ public class SecurityConfig {
                         .requestMatchers("/actuator/**").permitAll()
                         // All other requests require authentication
                         .anyRequest().authenticated()
-                );
+                )
+                .addFilterBefore(new ApiKeyAuthenticationFilter(apiClientCache, objectMapper),
+                        UsernamePasswordAuthenticationFilter.class)
+                .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
         
         return http.build();
     }
@@ -1,9 +1,11 @@
 package kg.notifications.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import kg.notifications.dto.ApiResponse;
 import kg.notifications.dto.AuditLogDto;
+import kg.notifications.dto.CursorPage;
 import kg.notifications.service.AuditLogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -44,4 +46,22 @@ public class AuditLogController {
         
         return ResponseEntity.ok(ApiResponse.success(logs));
     }
+    
+    @GetMapping("/cursor")
+    @Operation(
+            summary = "Журнал аудита (курсорная пагинация)",
+            description = "Возвращает записи от новых к старым по курсору nextCursor/prevCursor из предыдущего ответа"
+    )
+    public ResponseEntity<ApiResponse<CursorPage<AuditLogDto>>> getAuditLogsByCursor(
+            @Parameter(description = "Курсор страницы") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы (до 500)") @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String actionType,
+            @Parameter(description = "Вернуть примерное общее количество")
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        CursorPage<AuditLogDto> page =
+                auditLogService.getAuditLogsPage(entityType, actionType, cursor, size, includeTotal);
+        return ResponseEntity.ok(ApiResponse.success(page));
+    }
 }
@@ -3,6 +3,10 @@ package kg.notifications.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import kg.notifications.dto.ApiResponse;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.service.ChannelSender;
+import kg.notifications.service.ChannelSenderRegistry;
+import kg.notifications.service.ProviderHealthService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,7 +14,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,6 +25,9 @@ import java.util.Map;
 @Tag(name = "Health", description = "API для проверки работоспособности")
 public class HealthController {
     
+    private final ChannelSenderRegistry channelSenderRegistry;
+    private final ProviderHealthService providerHealthService;
+    
     @GetMapping("/health")
     @Operation(
             summary = "Проверка работоспособности",
@@ -44,7 +53,23 @@ public class HealthController {
         info.put("name", "Notification Service");
         info.put("version", "1.0.0");
         info.put("description", "Centralized Notification Service for multi-channel message delivery");
-        info.put("channels", new String[]{"EMAIL", "TELEGRAM", "SMS", "WHATSAPP"});
+        info.put("channels", channelSenderRegistry.supportedChannels());
+        
+        Map<ChannelType, List<Map<String, Object>>> providers = new LinkedHashMap<>();
+        for (ChannelType channel : channelSenderRegistry.supportedChannels()) {
+            List<Map<String, Object>> list = new ArrayList<>();
+            for (ChannelSender sender : channelSenderRegistry.providers(channel)) {
+                Map<String, Object> provider = new LinkedHashMap<>();
+                provider.put("name", sender.provider());
+                provider.put("available", sender.isAvailable());
+                provider.put("priority", providerHealthService.priority(channel, sender.provider()));
+                provider.put("circuit", providerHealthService.breaker(channel, sender.provider()).state());
+                provider.put("health", providerHealthService.healthStatus(channel, sender.provider()));
+                list.add(provider);
+            }
+            providers.put(channel, list);
+        }
+        info.put("providers", providers);
         
         return ResponseEntity.ok(ApiResponse.success(info));
     }
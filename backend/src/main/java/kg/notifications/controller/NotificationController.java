@@ -11,16 +11,25 @@ import jakarta.validation.Valid;
 import kg.notifications.dto.*;
 import kg.notifications.entity.ChannelType;
 import kg.notifications.entity.NotificationStatus;
+import kg.notifications.security.ApiClientPrincipal;
+import kg.notifications.service.ClientRateLimiter;
+import kg.notifications.service.LiveStatsService;
 import kg.notifications.service.NotificationService;
+import kg.notifications.service.StatusStreamService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -31,6 +40,9 @@ import java.util.UUID;
 public class NotificationController {
     
     private final NotificationService notificationService;
+    private final ClientRateLimiter rateLimiter;
+    private final LiveStatsService liveStatsService;
+    private final StatusStreamService statusStreamService;
     
     @PostMapping("/send")
     @Operation(
@@ -50,17 +62,22 @@ public class NotificationController {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
                     responseCode = "401",
                     description = "Не авторизован"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "429",
+                    description = "Превышен лимит запросов клиента"
             )
     })
     public ResponseEntity<ApiResponse<SendNotificationResponse>> sendNotification(
             @Valid @RequestBody SendNotificationRequest request,
+            @Parameter(hidden = true) @AuthenticationPrincipal ApiClientPrincipal client,
             HttpServletRequest httpRequest) {
         
-        log.info("Received notification request: channel={}", request.getChannel());
+        log.info("Received notification request: channel={}, client={}", request.getChannel(), client.clientName());
+        
+        rateLimiter.acquire(client, 1);
         
-        // For now, use default client ID = 1 (Test Client)
-        // In production, this would come from API Key authentication
-        Integer clientId = 1;
+        Integer clientId = client.clientId();
         String ipAddress = getClientIp(httpRequest);
         
         SendNotificationResponse response = notificationService.sendNotification(request, clientId, ipAddress);
@@ -69,6 +86,52 @@ public class NotificationController {
                 .body(ApiResponse.success(response, "Уведомление принято в обработку"));
     }
     
+    @PostMapping("/send/batch")
+    @Operation(
+            summary = "Пакетная отправка уведомлений",
+            description = "Принимает до 10000 уведомлений за один запрос. Повторяющиеся ключи идемпотентности " +
+                    "возвращают существующие уведомления. Результаты возвращаются в порядке запроса; уведомление " +
+                    "с неподдерживаемым каналом или ошибкой шаблона отклоняется отдельно, с полем error в своём результате"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Пакет принят в обработку",
+                    content = @Content(schema = @Schema(implementation = SendBatchResponse.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Невалидные данные запроса"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "401",
+                    description = "Не авторизован"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "429",
+                    description = "Превышен лимит запросов клиента"
+            )
+    })
+    public ResponseEntity<ApiResponse<SendBatchResponse>> sendNotificationBatch(
+            @Valid @RequestBody SendBatchRequest request,
+            @Parameter(hidden = true) @AuthenticationPrincipal ApiClientPrincipal client,
+            HttpServletRequest httpRequest) {
+        
+        log.info("Received notification batch: size={}, client={}",
+                request.getNotifications().size(), client.clientName());
+        
+        // Each notification in the batch counts against the client's limit
+        rateLimiter.acquire(client, request.getNotifications().size());
+        
+        Integer clientId = client.clientId();
+        String ipAddress = getClientIp(httpRequest);
+        
+        SendBatchResponse response = notificationService.sendBatch(request.getNotifications(), clientId, ipAddress);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(response, "Пакет уведомлений принят в обработку"));
+    }
+    
     @GetMapping("/status/{id}")
     @Operation(
             summary = "Получить статус уведомления",
@@ -94,6 +157,53 @@ public class NotificationController {
                         .body(ApiResponse.error("Уведомление не найдено")));
     }
     
+    @PostMapping("/status/batch")
+    @Operation(
+            summary = "Статусы уведомлений пакетом",
+            description = "Возвращает статусы до 5000 уведомлений клиента одним запросом, без текста и метаданных. " +
+                    "data — объект, ключи которого — переданные ID или ключи идемпотентности; " +
+                    "ненайденные отсутствуют. Ответ передаётся по мере чтения из БД"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Успешно",
+                    content = @Content(schema = @Schema(implementation = NotificationStatusDto.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Невалидные данные запроса"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "401",
+                    description = "Не авторизован"
+            )
+    })
+    public ResponseEntity<StreamingResponseBody> getNotificationStatuses(
+            @Valid @RequestBody StatusBatchRequest request,
+            @Parameter(hidden = true) @AuthenticationPrincipal ApiClientPrincipal client) {
+        
+        Integer clientId = client.clientId();
+        StreamingResponseBody body = out -> notificationService.writeStatuses(request, clientId, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    @RequestMapping(value = "/status/stream", method = {RequestMethod.GET, RequestMethod.POST},
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Подписка на изменения статусов",
+            description = "Server-Sent Events: событие status с JSON-массивом изменений статусов уведомлений клиента. " +
+                    "Без ids — все уведомления клиента, с ids — только перечисленные, и первым событием приходит " +
+                    "их текущий статус. Длинный список ids можно передать в теле POST-запроса " +
+                    "(application/x-www-form-urlencoded)"
+    )
+    public SseEmitter streamStatuses(
+            @Parameter(description = "ID уведомлений через запятую") @RequestParam(required = false) List<UUID> ids,
+            @Parameter(hidden = true) @AuthenticationPrincipal ApiClientPrincipal client) {
+        
+        return statusStreamService.subscribe(client.clientId(), ids);
+    }
+    
     @GetMapping("/admin/notifications")
     @Operation(
             summary = "Список уведомлений",
@@ -117,6 +227,26 @@ public class NotificationController {
         return ResponseEntity.ok(ApiResponse.success(notifications));
     }
     
+    @GetMapping("/admin/notifications/cursor")
+    @Operation(
+            summary = "Список уведомлений (курсорная пагинация)",
+            description = "Возвращает уведомления от новых к старым. Для следующей или предыдущей страницы " +
+                    "передайте nextCursor или prevCursor из ответа. Общее количество — оценка планировщика, " +
+                    "вычисляется только при includeTotal=true"
+    )
+    public ResponseEntity<ApiResponse<CursorPage<NotificationDto>>> getNotificationsByCursor(
+            @Parameter(description = "Курсор страницы") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы (до 200)") @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) NotificationStatus status,
+            @RequestParam(required = false) ChannelType channel,
+            @Parameter(description = "Вернуть примерное общее количество")
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        CursorPage<NotificationDto> page =
+                notificationService.getNotificationsPage(status, channel, cursor, size, includeTotal);
+        return ResponseEntity.ok(ApiResponse.success(page));
+    }
+    
     @GetMapping("/admin/notifications/{id}")
     @Operation(
             summary = "Детали уведомления",
@@ -155,6 +285,26 @@ public class NotificationController {
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
     
+    @GetMapping(value = "/admin/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Поток статистики в реальном времени",
+            description = "Server-Sent Events: каждую секунду событие stats с приращениями счётчиков по каналам " +
+                    "и суммами за скользящее окно. Данные берутся из памяти, без обращения к БД"
+    )
+    public SseEmitter streamStats() {
+        return liveStatsService.subscribe();
+    }
+    
+    @GetMapping("/admin/stats/live")
+    @Operation(
+            summary = "Поминутная статистика",
+            description = "Счётчики по каналам за последние N минут из памяти сервиса"
+    )
+    public ResponseEntity<ApiResponse<List<LiveStatsDto.MinuteStatDto>>> getLiveStats(
+            @Parameter(description = "Количество минут") @RequestParam(defaultValue = "60") int minutes) {
+        return ResponseEntity.ok(ApiResponse.success(liveStatsService.minutes(minutes)));
+    }
+    
     private String getClientIp(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
@@ -0,0 +1,25 @@
+package kg.notifications.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Cursors are null when there is nothing further
+ * in that direction; approximateTotal is a planner estimate and only filled on request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPage<T> {
+    
+    private List<T> content;
+    private Integer size;
+    private String nextCursor;
+    private String prevCursor;
+    private Long approximateTotal;
+}
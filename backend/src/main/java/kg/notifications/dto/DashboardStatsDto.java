@@ -19,6 +19,7 @@ public class DashboardStatsDto {
     private Long totalFailed;
     private Long totalPending;
     private Double successRate;
+    private Long avgDeliveryTimeMs;
     private Map<String, Long> byChannel;
     private Map<String, Long> byStatus;
     private List<HourlyStatDto> hourlyStats;
@@ -0,0 +1,35 @@
+package kg.notifications.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * In-memory counters pushed over /admin/stats/stream. Maps are channel -> counter -> count,
+ * with counters ACCEPTED, SENT, FAILED, RETRIED and EXPIRED; zero entries are omitted.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LiveStatsDto {
+    
+    private LocalDateTime at;
+    private Map<String, Map<String, Long>> delta;
+    private Map<String, Map<String, Long>> lastMinute;
+    private Map<String, Map<String, Long>> window;
+    private LocalDateTime windowStart;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class MinuteStatDto {
+        private LocalDateTime minute;
+        private Map<String, Map<String, Long>> counts;
+    }
+}
@@ -0,0 +1,33 @@
+package kg.notifications.dto;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.NotificationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Delivery state of a notification without recipient, content or metadata, as returned by /status/batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationStatusDto {
+    
+    private UUID notificationId;
+    private String idempotencyKey;
+    private ChannelType channelType;
+    private NotificationStatus status;
+    private Integer retryCount;
+    private String errorCode;
+    private String errorMessage;
+    private String providerMessageId;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,22 @@
+package kg.notifications.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SendBatchRequest {
+    
+    @NotEmpty(message = "Список уведомлений не может быть пустым")
+    @Size(max = 10000, message = "Не более 10000 уведомлений в одном запросе")
+    private List<@Valid SendNotificationRequest> notifications;
+}
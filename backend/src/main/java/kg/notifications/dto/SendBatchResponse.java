@@ -0,0 +1,21 @@
+package kg.notifications.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SendBatchResponse {
+    
+    private Integer total;
+    private Integer accepted;
+    private Integer duplicates;
+    private Integer rejected;
+    private List<SendNotificationResponse> results;
+}
@@ -1,6 +1,7 @@
 package kg.notifications.dto;
 
-import jakarta.validation.constraints.Email;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import kg.notifications.entity.ChannelType;
@@ -26,9 +27,18 @@ public class SendNotificationRequest {
     
     private String subject;
     
-    @NotBlank(message = "Текст сообщения обязателен")
+    /**
+     * Raw body; required unless templateCode is given.
+     */
     private String message;
     
+    /**
+     * Code of an active message template rendered with {@link #variables} into subject and body.
+     */
+    private String templateCode;
+    
+    private Map<String, Object> variables;
+    
     private Priority priority = Priority.NORMAL;
     
     private String idempotencyKey;
@@ -36,4 +46,10 @@ public class SendNotificationRequest {
     private String callbackUrl;
     
     private Map<String, Object> metadata;
+    
+    @JsonIgnore
+    @AssertTrue(message = "Текст сообщения или код шаблона обязателен")
+    public boolean isContentPresent() {
+        return templateCode != null ? !templateCode.isBlank() : message != null && !message.isBlank();
+    }
 }
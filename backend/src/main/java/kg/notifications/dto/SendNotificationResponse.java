@@ -1,5 +1,6 @@
 package kg.notifications.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import kg.notifications.entity.NotificationStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,4 +20,8 @@ public class SendNotificationResponse {
     private NotificationStatus status;
     private LocalDateTime createdAt;
     private String message;
+    
+    // Set instead of the fields above for a batch item that was rejected
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
 }
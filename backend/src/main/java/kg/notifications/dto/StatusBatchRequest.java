@@ -0,0 +1,31 @@
+package kg.notifications.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatusBatchRequest {
+    
+    @Size(max = 5000, message = "Не более 5000 ID в одном запросе")
+    private List<UUID> ids;
+    
+    @Size(max = 5000, message = "Не более 5000 ключей идемпотентности в одном запросе")
+    private List<String> idempotencyKeys;
+    
+    @JsonIgnore
+    @AssertTrue(message = "Укажите ids или idempotencyKeys")
+    public boolean isLookupPresent() {
+        return (ids != null && !ids.isEmpty()) || (idempotencyKeys != null && !idempotencyKeys.isEmpty());
+    }
+}
@@ -0,0 +1,44 @@
+package kg.notifications.dto;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One status transition as delivered to clients by webhooks and by /status/stream.
+ * {@code previousStatus} is null for a newly created notification and for the current status
+ * sent when a stream is opened.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatusUpdateDto {
+    
+    private UUID notificationId;
+    private NotificationStatus status;
+    private NotificationStatus previousStatus;
+    private ChannelType channel;
+    private String errorCode;
+    private Long deliveryTimeMs;
+    private LocalDateTime occurredAt;
+    
+    public static StatusUpdateDto of(NotificationStatusEvent event) {
+        return StatusUpdateDto.builder()
+                .notificationId(event.notificationId())
+                .status(event.newStatus())
+                .previousStatus(event.oldStatus())
+                .channel(event.channel())
+                .errorCode(event.errorCode())
+                .deliveryTimeMs(event.deliveryTimeMs())
+                .occurredAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -5,11 +5,13 @@ import lombok.*;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Map;
 
 @Entity
-@Table(name = "channel_configs")
+@Table(name = "channel_configs",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"channel_name", "provider_name"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -22,7 +24,7 @@ public class ChannelConfig {
     @Column(name = "config_id")
     private Integer configId;
 
-    @Column(name = "channel_name", nullable = false, unique = true, length = 20)
+    @Column(name = "channel_name", nullable = false, length = 20)
     @Enumerated(EnumType.STRING)
     private ChannelType channelName;
 
@@ -48,6 +50,9 @@ public class ChannelConfig {
     @Column(name = "daily_sent_count", nullable = false)
     private Integer dailySentCount = 0;
 
+    @Column(name = "daily_count_date")
+    private LocalDate dailyCountDate;
+
     @Column(name = "last_health_check")
     private LocalDateTime lastHealthCheck;
 
@@ -66,7 +66,8 @@ public class Notification {
     @Column(name = "provider_message_id")
     private String providerMessageId;
 
-    @Column(name = "idempotency_key", unique = true)
+    // Uniqueness is enforced by notification_idempotency_keys; a partitioned table cannot carry it
+    @Column(name = "idempotency_key")
     private String idempotencyKey;
 
     @Column(name = "callback_url", length = 500)
@@ -0,0 +1,44 @@
+package kg.notifications.event;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Published when a notification is created or changes status.
+ * {@code oldStatus} is null for newly created notifications; {@code callbackUrl} is the one given
+ * with the notification, if any.
+ */
+public record NotificationStatusEvent(
+        UUID notificationId,
+        ChannelType channel,
+        LocalDateTime createdAt,
+        NotificationStatus oldStatus,
+        NotificationStatus newStatus,
+        Long deliveryTimeMs,
+        Integer clientId,
+        String callbackUrl,
+        String errorCode
+) {
+    
+    public static NotificationStatusEvent of(Notification notification, NotificationStatus oldStatus) {
+        Long deliveryTimeMs = notification.getStatus() == NotificationStatus.SENT && notification.getSentAt() != null
+                ? Duration.between(notification.getCreatedAt(), notification.getSentAt()).toMillis()
+                : null;
+        return new NotificationStatusEvent(
+                notification.getNotificationId(),
+                notification.getChannelType(),
+                notification.getCreatedAt(),
+                oldStatus,
+                notification.getStatus(),
+                deliveryTimeMs,
+                // The id is read from the proxy without initializing it
+                notification.getClient() != null ? notification.getClient().getClientId() : null,
+                notification.getCallbackUrl(),
+                notification.getErrorCode());
+    }
+}
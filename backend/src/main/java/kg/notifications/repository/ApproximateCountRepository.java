@@ -0,0 +1,48 @@
+package kg.notifications.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Row count estimates that never scan the table: pg_class.reltuples for a whole table and
+ * the planner's row estimate for a filtered one. Accuracy follows the last ANALYZE.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class ApproximateCountRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * @param table   trusted table name
+     * @param where   trusted SQL condition with ? placeholders, or null for the whole table
+     * @return estimated row count, or null if unknown
+     */
+    public Long estimate(String table, String where, Object... args) {
+        try {
+            if (where == null) {
+                Long reltuples = jdbcTemplate.queryForObject(
+                        "SELECT reltuples::bigint FROM pg_class WHERE oid = ?::regclass", Long.class, table);
+                if (reltuples != null && reltuples >= 0) {
+                    return reltuples;
+                }
+            }
+            List<String> plan = jdbcTemplate.queryForList(
+                    "EXPLAIN (FORMAT JSON) SELECT 1 FROM " + table + (where != null ? " WHERE " + where : ""),
+                    String.class, args);
+            JsonNode root = objectMapper.readTree(plan.get(0));
+            return root.get(0).get("Plan").get("Plan Rows").asLong();
+        } catch (Exception e) {
+            log.warn("Row estimate for {} failed: {}", table, e.getMessage());
+            return null;
+        }
+    }
+}
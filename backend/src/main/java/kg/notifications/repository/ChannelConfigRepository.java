@@ -11,9 +11,9 @@ import java.util.Optional;
 @Repository
 public interface ChannelConfigRepository extends JpaRepository<ChannelConfig, Integer> {
     
-    Optional<ChannelConfig> findByChannelName(ChannelType channelName);
+    Optional<ChannelConfig> findByChannelNameAndProviderName(ChannelType channelName, String providerName);
     
     List<ChannelConfig> findByIsEnabledTrueOrderByPriorityAsc();
     
-    Optional<ChannelConfig> findByChannelNameAndIsEnabledTrue(ChannelType channelName);
+    List<ChannelConfig> findByChannelNameAndIsEnabledTrueOrderByPriorityAsc(ChannelType channelName);
 }
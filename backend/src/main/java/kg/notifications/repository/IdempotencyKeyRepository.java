@@ -0,0 +1,103 @@
+package kg.notifications.repository;
+
+import kg.notifications.entity.Notification;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * notification_idempotency_keys: the globally unique side of idempotency keys, kept outside
+ * the partitioned notifications table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+    
+    private static final String CLAIM_SQL =
+            "INSERT INTO notification_idempotency_keys (idempotency_key, notification_id, created_at) " +
+            "SELECT * FROM unnest(?::varchar[], ?::uuid[], ?::timestamp[]) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING " +
+            "RETURNING idempotency_key";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Registers the keys of freshly inserted notifications in the current transaction. A key being
+     * claimed by another open transaction blocks until that one finishes, like a unique index would.
+     *
+     * @return keys that already belonged to another notification
+     */
+    public Set<String> claim(List<Notification> notifications) {
+        // A fixed lock order keeps two batches with overlapping keys from deadlocking
+        notifications = notifications.stream()
+                .sorted(Comparator.comparing(Notification::getIdempotencyKey))
+                .toList();
+        String[] keys = new String[notifications.size()];
+        UUID[] ids = new UUID[keys.length];
+        Timestamp[] createdAt = new Timestamp[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Notification n = notifications.get(i);
+            keys[i] = n.getIdempotencyKey();
+            ids[i] = n.getNotificationId();
+            createdAt[i] = Timestamp.valueOf(n.getCreatedAt());
+        }
+        
+        List<String> claimed = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CLAIM_SQL);
+            Array keyArray = con.createArrayOf("varchar", keys);
+            Array idArray = con.createArrayOf("uuid", ids);
+            Array createdArray = con.createArrayOf("timestamp", createdAt);
+            ps.setArray(1, keyArray);
+            ps.setArray(2, idArray);
+            ps.setArray(3, createdArray);
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+        
+        Set<String> taken = new HashSet<>(List.of(keys));
+        claimed.forEach(taken::remove);
+        return taken;
+    }
+    
+    /**
+     * Notification ids the keys belong to; keys that are not registered are left out.
+     */
+    public Map<String, UUID> findOwners(Collection<String> keys) {
+        Map<String, UUID> owners = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT idempotency_key, notification_id FROM notification_idempotency_keys " +
+                "WHERE idempotency_key = ANY(?)",
+                (RowCallbackHandler) rs -> owners.put(rs.getString(1), rs.getObject(2, UUID.class)),
+                (Object) keys.toArray(String[]::new));
+        return owners;
+    }
+    
+    /**
+     * (key, created_at) pairs created after {@code after}, oldest first.
+     */
+    public List<Object[]> findCreatedAfter(LocalDateTime after, int limit) {
+        return jdbcTemplate.query(
+                "SELECT idempotency_key, created_at FROM notification_idempotency_keys " +
+                "WHERE created_at > ? ORDER BY created_at LIMIT ?",
+                (rs, rowNum) -> new Object[]{rs.getString(1), rs.getTimestamp(2).toLocalDateTime()},
+                Timestamp.valueOf(after), limit);
+    }
+    
+    public int deleteCreatedBefore(LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM notification_idempotency_keys WHERE created_at < ?",
+                Timestamp.valueOf(before));
+    }
+}
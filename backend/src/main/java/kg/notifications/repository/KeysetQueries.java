@@ -0,0 +1,103 @@
+package kg.notifications.repository;
+
+import kg.notifications.dto.CursorPage;
+import kg.notifications.util.PageCursor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Building blocks for keyset pagination over (createdAt, id), newest first.
+ * <p>
+ * Each page is read as {@code limit + 1} rows strictly after the cursor in index order, so no
+ * OFFSET and no COUNT are needed; the extra row only tells whether another page exists.
+ * Every filtered listing should be backed by an index on (filter, created_at DESC, id DESC).
+ */
+public final class KeysetQueries {
+    
+    private KeysetQueries() {
+    }
+    
+    /**
+     * Equality filter, or no restriction when {@code value} is null.
+     */
+    public static <T> Specification<T> equal(String attribute, Object value) {
+        return value == null ? null : (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+    
+    /**
+     * Rows strictly older (forward) or newer (backward) than the cursor row.
+     */
+    public static <T, I extends Comparable<? super I>> Specification<T> after(
+            PageCursor cursor, String createdAtAttribute, String idAttribute, Function<String, I> idParser) {
+        if (cursor == null) {
+            return null;
+        }
+        LocalDateTime createdAt = cursor.createdAt();
+        I id = idParser.apply(cursor.id());
+        return (root, query, cb) -> {
+            if (cursor.backward()) {
+                return cb.and(
+                        cb.greaterThanOrEqualTo(root.get(createdAtAttribute), createdAt),
+                        cb.or(cb.greaterThan(root.get(createdAtAttribute), createdAt),
+                                cb.greaterThan(root.<I>get(idAttribute), id)));
+            }
+            // The redundant bound lets the planner use it as the index range start
+            return cb.and(
+                    cb.lessThanOrEqualTo(root.get(createdAtAttribute), createdAt),
+                    cb.or(cb.lessThan(root.get(createdAtAttribute), createdAt),
+                            cb.lessThan(root.<I>get(idAttribute), id)));
+        };
+    }
+    
+    public static Sort order(PageCursor cursor, String createdAtAttribute, String idAttribute) {
+        Sort.Direction direction = cursor != null && cursor.backward() ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, createdAtAttribute, idAttribute);
+    }
+    
+    /**
+     * Assembles a page from up to {@code limit + 1} rows fetched with {@link #after} and {@link #order}.
+     */
+    public static <E, D> CursorPage<D> page(List<E> rows, int limit, PageCursor cursor,
+                                            Function<E, LocalDateTime> createdAt, Function<E, Object> id,
+                                            Function<E, D> mapper) {
+        boolean backward = cursor != null && cursor.backward();
+        boolean more = rows.size() > limit;
+        List<E> page = new ArrayList<>(more ? rows.subList(0, limit) : rows);
+        if (backward) {
+            Collections.reverse(page);
+        }
+        
+        String next = null;
+        String prev = null;
+        if (page.isEmpty()) {
+            // Nothing left in this direction; allow stepping back the way we came
+            if (cursor != null) {
+                PageCursor reverse = new PageCursor(!backward, cursor.createdAt(), cursor.id());
+                next = backward ? reverse.encode() : null;
+                prev = backward ? null : reverse.encode();
+            }
+        } else {
+            E first = page.get(0);
+            E last = page.get(page.size() - 1);
+            if (backward || more) {
+                next = new PageCursor(false, createdAt.apply(last), String.valueOf(id.apply(last))).encode();
+            }
+            if (backward ? more : cursor != null) {
+                prev = new PageCursor(true, createdAt.apply(first), String.valueOf(id.apply(first))).encode();
+            }
+        }
+        
+        return CursorPage.<D>builder()
+                .content(page.stream().map(mapper).toList())
+                .size(page.size())
+                .nextCursor(next)
+                .prevCursor(prev)
+                .build();
+    }
+}
@@ -7,11 +7,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -21,6 +24,8 @@ public interface NotificationRepository extends JpaRepository<Notification, UUID
     
     Optional<Notification> findByIdempotencyKey(String idempotencyKey);
     
+    List<Notification> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+    
     @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.client WHERE n.status = :status")
     Page<Notification> findByStatusWithClient(@Param("status") NotificationStatus status, Pageable pageable);
     
@@ -34,8 +39,56 @@ public interface NotificationRepository extends JpaRepository<Notification, UUID
             @Param("status") NotificationStatus status,
             @Param("now") LocalDateTime now);
     
-    @Query("SELECT n FROM Notification n WHERE n.status = 'PENDING' AND n.expiresAt < :now")
-    List<Notification> findExpiredNotifications(@Param("now") LocalDateTime now);
+    /**
+     * Locks the next batch of notifications ready for dispatch. Rows locked by other workers
+     * are skipped, so several replicas can drain the queue concurrently without double-sending.
+     * SENDING rows whose lease has expired (worker crashed mid-send) are reclaimed.
+     * Scheduled retries become ready once the retry scheduler clears their next_retry_at.
+     * Each priority lane is claimed separately, see idx_notifications_dispatch.
+     */
+    @Query(value = "SELECT * FROM notifications " +
+            "WHERE priority = :priority AND channel_type IN (:channels) " +
+            "AND ((status = 'PENDING' AND next_retry_at IS NULL) " +
+            "OR (status = 'SENDING' AND updated_at < :staleBefore)) " +
+            "AND (expires_at IS NULL OR expires_at > :now) " +
+            "ORDER BY created_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Notification> lockNextBatch(
+            @Param("priority") String priority,
+            @Param("channels") Collection<String> channels,
+            @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore,
+            @Param("limit") int limit);
+    
+    /**
+     * Per-lane depth and oldest ready time of the dispatch queue.
+     */
+    @Query("SELECT n.priority, COUNT(n), MIN(n.updatedAt) FROM Notification n " +
+           "WHERE n.status = 'PENDING' AND n.nextRetryAt IS NULL GROUP BY n.priority")
+    List<Object[]> countReadyByPriority();
+    
+    /**
+     * Keyset scan over idx_notifications_next_retry: (id, nextRetryAt) of retries due in (from, to].
+     */
+    @Query("SELECT n.notificationId, n.nextRetryAt FROM Notification n " +
+           "WHERE n.status = 'PENDING' AND n.nextRetryAt <= :to " +
+           "AND (n.nextRetryAt > :from OR (n.nextRetryAt = :from AND n.notificationId > :afterId)) " +
+           "ORDER BY n.nextRetryAt, n.notificationId")
+    List<Object[]> findRetryTimers(
+            @Param("from") LocalDateTime from,
+            @Param("afterId") UUID afterId,
+            @Param("to") LocalDateTime to,
+            Pageable pageable);
+    
+    /**
+     * Makes due retries visible to the dispatch queue. Idempotent, so replicas may fire the same timer.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Notification n SET n.nextRetryAt = NULL " +
+           "WHERE n.notificationId IN :ids AND n.status = 'PENDING' AND n.nextRetryAt <= :now")
+    int releaseDueRetries(@Param("ids") Collection<UUID> ids, @Param("now") LocalDateTime now);
     
     // Statistics queries
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.createdAt >= :since")
@@ -56,7 +109,8 @@ public interface NotificationRepository extends JpaRepository<Notification, UUID
            "ORDER BY hour")
     List<Object[]> countByHourSince(@Param("since") LocalDateTime since);
     
-    List<Notification> findTop10ByStatusOrderByCreatedAtDesc(NotificationStatus status);
+    List<Notification> findTop10ByStatusAndCreatedAtAfterOrderByCreatedAtDesc(
+            NotificationStatus status, LocalDateTime after);
     
     @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.client ORDER BY n.createdAt DESC")
     Page<Notification> findAllWithClient(Pageable pageable);
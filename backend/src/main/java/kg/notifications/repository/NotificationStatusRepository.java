@@ -0,0 +1,247 @@
+package kg.notifications.repository;
+
+import kg.notifications.dto.NotificationStatusDto;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bulk delivery status writes: one statement per group of send results, with per-row values
+ * passed as arrays and rows matched on (notification_id, created_at) so partitions are pruned.
+ * Writes only apply to rows still SENDING under the caller's claim: updated_at must equal the
+ * value stored by {@link #claim} (the update trigger replaces it with NOW()), so a worker whose lease expired and whose row was reclaimed
+ * cannot overwrite the newer outcome. Each write returns the ids it actually updated.
+ * Bulk status reads take their ids as arrays too and select only the delivery columns.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationStatusRepository {
+    
+    private static final String CLAIM_SQL =
+            "UPDATE notifications n SET status = 'SENDING', updated_at = ? " +
+            "FROM unnest(?::uuid[], ?::timestamp[]) v(id, created_at) " +
+            "WHERE n.notification_id = v.id AND n.created_at = v.created_at " +
+            "RETURNING n.notification_id, n.updated_at";
+    
+    private static final String MARK_SENT_SQL =
+            "UPDATE notifications n SET status = 'SENT', sent_at = ?, updated_at = ?, " +
+            "error_message = NULL, error_code = NULL, " +
+            "provider_message_id = COALESCE(v.provider_message_id, n.provider_message_id) " +
+            "FROM unnest(?::uuid[], ?::timestamp[], ?::timestamp[], ?::varchar[]) " +
+            "v(id, created_at, claimed_at, provider_message_id) " +
+            "WHERE n.notification_id = v.id AND n.created_at = v.created_at " +
+            "AND n.status = 'SENDING' AND n.updated_at = v.claimed_at " +
+            "RETURNING n.notification_id";
+    
+    private static final String MARK_FAILED_SQL =
+            "UPDATE notifications n SET status = v.status, retry_count = v.retry_count, " +
+            "next_retry_at = v.next_retry_at, error_message = v.error_message, error_code = v.error_code, " +
+            "updated_at = ? " +
+            "FROM unnest(?::uuid[], ?::timestamp[], ?::timestamp[], ?::varchar[], ?::int[], ?::timestamp[], " +
+            "?::text[], ?::varchar[]) " +
+            "v(id, created_at, claimed_at, status, retry_count, next_retry_at, error_message, error_code) " +
+            "WHERE n.notification_id = v.id AND n.created_at = v.created_at " +
+            "AND n.status = 'SENDING' AND n.updated_at = v.claimed_at " +
+            "RETURNING n.notification_id";
+    
+    private static final String RELEASE_SQL =
+            "UPDATE notifications n SET status = 'PENDING', updated_at = ? " +
+            "FROM unnest(?::uuid[], ?::timestamp[], ?::timestamp[]) v(id, created_at, claimed_at) " +
+            "WHERE n.notification_id = v.id AND n.created_at = v.created_at " +
+            "AND n.status = 'SENDING' AND n.updated_at = v.claimed_at";
+    
+    private static final String DEFER_SQL =
+            "UPDATE notifications SET status = 'PENDING', next_retry_at = ?, updated_at = ? " +
+            "WHERE notification_id = ? AND created_at = ? AND status = 'SENDING' AND updated_at = ?";
+    
+    private static final String FIND_STATUSES_SQL =
+            "SELECT notification_id, idempotency_key, channel_type, status, retry_count, error_code, " +
+            "error_message, provider_message_id, created_at, updated_at, sent_at FROM notifications " +
+            "WHERE client_id = ? AND (notification_id = ANY(?) OR idempotency_key = ANY(?))";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Passes the client's notifications matching any of {@code ids} or {@code idempotencyKeys} to
+     * {@code consumer} as rows are read; other clients' notifications and unknown ids are skipped.
+     */
+    public void findStatuses(Integer clientId, Collection<UUID> ids, Collection<String> idempotencyKeys,
+                             Consumer<NotificationStatusDto> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_STATUSES_SQL);
+            ps.setInt(1, clientId);
+            ps.setArray(2, con.createArrayOf("uuid", ids.toArray()));
+            ps.setArray(3, con.createArrayOf("varchar", idempotencyKeys.toArray()));
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(NotificationStatusDto.builder()
+                .notificationId(rs.getObject(1, UUID.class))
+                .idempotencyKey(rs.getString(2))
+                .channelType(ChannelType.valueOf(rs.getString(3)))
+                .status(NotificationStatus.valueOf(rs.getString(4)))
+                .retryCount(rs.getInt(5))
+                .errorCode(rs.getString(6))
+                .errorMessage(rs.getString(7))
+                .providerMessageId(rs.getString(8))
+                .createdAt(toDateTime(rs.getTimestamp(9)))
+                .updatedAt(toDateTime(rs.getTimestamp(10)))
+                .sentAt(toDateTime(rs.getTimestamp(11)))
+                .build()));
+    }
+    
+    /**
+     * Marks locked notifications SENDING and sets each entity's status and updatedAt to the stored
+     * values, which later status writes use as the claim token.
+     */
+    public void claim(List<Notification> notifications, LocalDateTime now) {
+        int size = notifications.size();
+        UUID[] ids = new UUID[size];
+        Timestamp[] createdAt = new Timestamp[size];
+        Map<UUID, Notification> byId = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Notification n = notifications.get(i);
+            ids[i] = n.getNotificationId();
+            createdAt[i] = Timestamp.valueOf(n.getCreatedAt());
+            byId.put(n.getNotificationId(), n);
+        }
+        
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CLAIM_SQL);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setArray(2, con.createArrayOf("uuid", ids));
+            ps.setArray(3, con.createArrayOf("timestamp", createdAt));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            Notification n = byId.get(rs.getObject(1, UUID.class));
+            n.setStatus(NotificationStatus.SENDING);
+            n.setUpdatedAt(rs.getTimestamp(2).toLocalDateTime());
+        });
+    }
+    
+    /**
+     * Marks notifications SENT, keeping each one's providerMessageId if set.
+     */
+    public Set<UUID> markSent(List<Notification> notifications, LocalDateTime now) {
+        int size = notifications.size();
+        UUID[] ids = new UUID[size];
+        Timestamp[] createdAt = new Timestamp[size];
+        Timestamp[] claimedAt = new Timestamp[size];
+        String[] providerIds = new String[size];
+        for (int i = 0; i < size; i++) {
+            Notification n = notifications.get(i);
+            ids[i] = n.getNotificationId();
+            createdAt[i] = Timestamp.valueOf(n.getCreatedAt());
+            claimedAt[i] = Timestamp.valueOf(n.getUpdatedAt());
+            providerIds[i] = n.getProviderMessageId();
+        }
+        
+        Timestamp ts = Timestamp.valueOf(now);
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(MARK_SENT_SQL);
+            ps.setTimestamp(1, ts);
+            ps.setTimestamp(2, ts);
+            ps.setArray(3, con.createArrayOf("uuid", ids));
+            ps.setArray(4, con.createArrayOf("timestamp", createdAt));
+            ps.setArray(5, con.createArrayOf("timestamp", claimedAt));
+            ps.setArray(6, con.createArrayOf("varchar", providerIds));
+            return ps;
+        }, (rs, rowNum) -> rs.getObject(1, UUID.class)));
+    }
+    
+    /**
+     * Writes status, retry_count, next_retry_at and error fields as already set on each entity.
+     */
+    public Set<UUID> markFailed(List<Notification> notifications, LocalDateTime now) {
+        int size = notifications.size();
+        UUID[] ids = new UUID[size];
+        Timestamp[] createdAt = new Timestamp[size];
+        Timestamp[] claimedAt = new Timestamp[size];
+        String[] statuses = new String[size];
+        Integer[] retryCounts = new Integer[size];
+        Timestamp[] nextRetryAt = new Timestamp[size];
+        String[] errorMessages = new String[size];
+        String[] errorCodes = new String[size];
+        for (int i = 0; i < size; i++) {
+            Notification n = notifications.get(i);
+            ids[i] = n.getNotificationId();
+            createdAt[i] = Timestamp.valueOf(n.getCreatedAt());
+            claimedAt[i] = Timestamp.valueOf(n.getUpdatedAt());
+            statuses[i] = n.getStatus().name();
+            retryCounts[i] = n.getRetryCount();
+            nextRetryAt[i] = n.getNextRetryAt() != null ? Timestamp.valueOf(n.getNextRetryAt()) : null;
+            errorMessages[i] = n.getErrorMessage();
+            errorCodes[i] = n.getErrorCode();
+        }
+        
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(MARK_FAILED_SQL);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setArray(2, con.createArrayOf("uuid", ids));
+            ps.setArray(3, con.createArrayOf("timestamp", createdAt));
+            ps.setArray(4, con.createArrayOf("timestamp", claimedAt));
+            ps.setArray(5, con.createArrayOf("varchar", statuses));
+            ps.setArray(6, con.createArrayOf("int4", retryCounts));
+            ps.setArray(7, con.createArrayOf("timestamp", nextRetryAt));
+            ps.setArray(8, con.createArrayOf("text", errorMessages));
+            ps.setArray(9, con.createArrayOf("varchar", errorCodes));
+            return ps;
+        }, (rs, rowNum) -> rs.getObject(1, UUID.class)));
+    }
+    
+    /**
+     * Hands claimed notifications back as PENDING, ready at once. Returns how many were still claimed.
+     */
+    public int release(List<Notification> notifications, LocalDateTime now) {
+        int size = notifications.size();
+        UUID[] ids = new UUID[size];
+        Timestamp[] createdAt = new Timestamp[size];
+        Timestamp[] claimedAt = new Timestamp[size];
+        for (int i = 0; i < size; i++) {
+            Notification n = notifications.get(i);
+            ids[i] = n.getNotificationId();
+            createdAt[i] = Timestamp.valueOf(n.getCreatedAt());
+            claimedAt[i] = Timestamp.valueOf(n.getUpdatedAt());
+        }
+        
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(RELEASE_SQL);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setArray(2, con.createArrayOf("uuid", ids));
+            ps.setArray(3, con.createArrayOf("timestamp", createdAt));
+            ps.setArray(4, con.createArrayOf("timestamp", claimedAt));
+            return ps;
+        });
+    }
+    
+    /**
+     * Hands a claimed notification back as PENDING with the given next_retry_at, without touching
+     * retry_count. Returns false if the claim was lost.
+     */
+    public boolean defer(Notification notification, LocalDateTime at, LocalDateTime now) {
+        return jdbcTemplate.update(DEFER_SQL,
+                Timestamp.valueOf(at),
+                Timestamp.valueOf(now),
+                notification.getNotificationId(),
+                Timestamp.valueOf(notification.getCreatedAt()),
+                Timestamp.valueOf(notification.getUpdatedAt())) > 0;
+    }
+    
+    private static LocalDateTime toDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
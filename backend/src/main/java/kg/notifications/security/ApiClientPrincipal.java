@@ -0,0 +1,10 @@
+package kg.notifications.security;
+
+import kg.notifications.util.TokenBucket;
+
+/**
+ * Authenticated API client, resolved from the X-API-Key header.
+ * Carries the client's rate limit bucket so the check needs no lookup.
+ */
+public record ApiClientPrincipal(Integer clientId, String clientName, Integer rateLimit, TokenBucket rateLimitBucket) {
+}
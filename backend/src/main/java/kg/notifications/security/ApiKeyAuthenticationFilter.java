@@ -0,0 +1,61 @@
+package kg.notifications.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kg.notifications.dto.ApiResponse;
+import kg.notifications.service.ApiClientCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Authenticates external clients by the X-API-Key header.
+ * Registered only in the security filter chain, see SecurityConfig.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
+    
+    public static final String API_KEY_HEADER = "X-API-Key";
+    
+    private final ApiClientCache apiClientCache;
+    private final ObjectMapper objectMapper;
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey == null || apiKey.isBlank()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        Optional<ApiClientPrincipal> principal = apiClientCache.resolve(apiKey.trim());
+        if (principal.isEmpty()) {
+            log.warn("Rejected invalid API key from {}", request.getRemoteAddr());
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), ApiResponse.error("Неверный API ключ"));
+            return;
+        }
+        
+        ApiClientPrincipal client = principal.get();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                client, null, AuthorityUtils.createAuthorityList("ROLE_API_CLIENT")));
+        apiClientCache.touch(client.clientId());
+        
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,168 @@
+package kg.notifications.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kg.notifications.entity.ApiClient;
+import kg.notifications.repository.ApiClientRepository;
+import kg.notifications.security.ApiClientPrincipal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves API keys to clients without touching api_clients on the request path.
+ * <p>
+ * Keys are looked up by their 8-character prefix and verified against the stored SHA-256 hash.
+ * Resolved clients are cached by hash for {@code cache-ttl-ms}, so deactivated clients lose access
+ * within one TTL. Unknown keys are cached for {@code negative-cache-ttl-ms} in a map capped at
+ * {@code negative-cache-max-size} that drops its oldest entries first, so random keys cannot grow
+ * the heap; expired entries of both are evicted periodically. last_used_at is tracked in memory
+ * and written back in one batch UPDATE per flush interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ApiClientCache {
+    
+    public static final int KEY_PREFIX_LENGTH = 8;
+    
+    private final ApiClientRepository apiClientRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClientRateLimiter rateLimiter;
+    
+    @Value("${notification.api-keys.cache-ttl-ms:60000}")
+    private long cacheTtlMs;
+    
+    @Value("${notification.api-keys.negative-cache-ttl-ms:10000}")
+    private long negativeCacheTtlMs;
+    
+    @Value("${notification.api-keys.negative-cache-max-size:10000}")
+    private int negativeCacheMaxSize;
+    
+    private final Map<String, CachedClient> byHash = new ConcurrentHashMap<>();
+    private Map<String, Long> misses;
+    private final Map<Integer, LocalDateTime> lastUsed = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        misses = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > negativeCacheMaxSize;
+            }
+        });
+    }
+    
+    public Optional<ApiClientPrincipal> resolve(String apiKey) {
+        if (apiKey == null || apiKey.length() < KEY_PREFIX_LENGTH) {
+            return Optional.empty();
+        }
+        
+        String hash = sha256(apiKey);
+        long now = System.currentTimeMillis();
+        CachedClient cached = byHash.get(hash);
+        if (cached != null && cached.expiresAt >= now) {
+            return Optional.of(cached.principal);
+        }
+        Long missExpiresAt = misses.get(hash);
+        if (missExpiresAt != null && missExpiresAt >= now) {
+            return Optional.empty();
+        }
+        
+        ApiClientPrincipal principal = load(apiKey.substring(0, KEY_PREFIX_LENGTH), hash);
+        if (principal != null) {
+            byHash.put(hash, new CachedClient(principal, now + cacheTtlMs));
+            misses.remove(hash);
+        } else {
+            byHash.remove(hash);
+            misses.put(hash, now + negativeCacheTtlMs);
+        }
+        return Optional.ofNullable(principal);
+    }
+    
+    /**
+     * Records a request from the client; persisted by the next {@link #flushLastUsed()}.
+     */
+    public void touch(Integer clientId) {
+        lastUsed.put(clientId, LocalDateTime.now());
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.api-keys.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        byHash.values().removeIf(cached -> cached.expiresAt < now);
+        synchronized (misses) {
+            misses.values().removeIf(expiresAt -> expiresAt < now);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.api-keys.last-used-flush-ms:30000}")
+    public void flushLastUsed() {
+        if (lastUsed.isEmpty()) {
+            return;
+        }
+        
+        List<Object[]> batch = new ArrayList<>(lastUsed.size());
+        for (Integer clientId : new ArrayList<>(lastUsed.keySet())) {
+            LocalDateTime usedAt = lastUsed.remove(clientId);
+            if (usedAt != null) {
+                Timestamp ts = Timestamp.valueOf(usedAt);
+                batch.add(new Object[]{ts, clientId, ts});
+            }
+        }
+        
+        try {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE api_clients SET last_used_at = ? " +
+                    "WHERE client_id = ? AND (last_used_at IS NULL OR last_used_at < ?)", batch);
+            log.debug("Flushed last_used_at for {} API clients", batch.size());
+        } catch (Exception e) {
+            log.warn("Failed to flush API client last_used_at: {}", e.getMessage());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushLastUsed();
+    }
+    
+    private ApiClientPrincipal load(String prefix, String hash) {
+        byte[] expected = hash.getBytes(StandardCharsets.US_ASCII);
+        for (ApiClient client : apiClientRepository.findByApiKeyPrefixAndActive(prefix)) {
+            if (MessageDigest.isEqual(expected, client.getApiKeyHash().getBytes(StandardCharsets.US_ASCII))) {
+                return new ApiClientPrincipal(client.getClientId(), client.getClientName(), client.getRateLimit(),
+                        rateLimiter.bucketFor(client.getClientId(), client.getRateLimit()));
+            }
+        }
+        return null;
+    }
+    
+    public static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private record CachedClient(ApiClientPrincipal principal, long expiresAt) {
+    }
+}
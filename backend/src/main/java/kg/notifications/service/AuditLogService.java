@@ -1,22 +1,35 @@
 package kg.notifications.service;
 
+import jakarta.persistence.criteria.JoinType;
 import kg.notifications.dto.AuditLogDto;
+import kg.notifications.dto.CursorPage;
 import kg.notifications.entity.AuditLog;
+import kg.notifications.repository.ApproximateCountRepository;
 import kg.notifications.repository.AuditLogRepository;
+import kg.notifications.repository.KeysetQueries;
+import kg.notifications.util.PageCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AuditLogService {
     
+    private static final int MAX_PAGE_SIZE = 500;
+    
     private final AuditLogRepository auditLogRepository;
+    private final ApproximateCountRepository approximateCountRepository;
     
     public Page<AuditLogDto> getAuditLogs(Pageable pageable) {
         return auditLogRepository.findAllByOrderByCreatedAtDesc(
@@ -36,6 +49,47 @@ public class AuditLogService {
         return auditLogRepository.findByActionType(actionType, pageable).map(this::toDto);
     }
     
+    /**
+     * Keyset page of audit entries, newest first, optionally filtered by entity and action type.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AuditLogDto> getAuditLogsPage(String entityType, String actionType,
+                                                    String cursorToken, int size, boolean includeTotal) {
+        PageCursor cursor = PageCursor.decode(cursorToken);
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        
+        Specification<AuditLog> spec = Specification.allOf(
+                (root, query, cb) -> {
+                    root.fetch("admin", JoinType.LEFT);
+                    return null;
+                },
+                KeysetQueries.equal("entityType", entityType),
+                KeysetQueries.equal("actionType", actionType),
+                KeysetQueries.after(cursor, "createdAt", "logId", Long::valueOf));
+        List<AuditLog> rows = auditLogRepository.findBy(spec, q -> q
+                .sortBy(KeysetQueries.order(cursor, "createdAt", "logId"))
+                .limit(limit + 1)
+                .all());
+        
+        CursorPage<AuditLogDto> page = KeysetQueries.page(rows, limit, cursor,
+                AuditLog::getCreatedAt, AuditLog::getLogId, this::toDto);
+        if (includeTotal) {
+            List<String> where = new ArrayList<>();
+            List<Object> args = new ArrayList<>();
+            if (entityType != null) {
+                where.add("entity_type = ?");
+                args.add(entityType);
+            }
+            if (actionType != null) {
+                where.add("action_type = ?");
+                args.add(actionType);
+            }
+            page.setApproximateTotal(approximateCountRepository.estimate("audit_log",
+                    where.isEmpty() ? null : String.join(" AND ", where), args.toArray()));
+        }
+        return page;
+    }
+    
     private AuditLogDto toDto(AuditLog log) {
         return AuditLogDto.builder()
                 .logId(log.getLogId())
@@ -1,48 +1,123 @@
 package kg.notifications.service;
 
-import kg.notifications.entity.AuditLog;
-import kg.notifications.repository.AuditLogRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Buffers audit events in a bounded queue and writes them with batched inserts.
+ * <p>
+ * A single flusher thread writes a batch once {@code batch-size} events are queued or
+ * {@code flush-interval-ms} after the first one arrived, so callers never open a transaction.
+ * When the queue is full, BLOCK waits up to {@code block-timeout-ms} and DROP discards immediately;
+ * discarded events and events that fail to insert even on their own are counted in
+ * audit.events.dropped. Pending events are drained on shutdown.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AuditService {
     
-    private final AuditLogRepository auditLogRepository;
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_log (admin_id, action_type, entity_type, entity_id, old_value, new_value, " +
+            "ip_address, user_agent, created_at) VALUES (?, ?, ?, ?, ?::jsonb, ?::jsonb, ?, ?, ?)";
     
-    @Async
-    @Transactional
-    public void logAction(Integer adminId, String actionType, String entityType, 
-                         String entityId, Map<String, Object> oldValue, 
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${notification.audit.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${notification.audit.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${notification.audit.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    
+    /**
+     * BLOCK: wait for space up to block-timeout-ms. DROP: discard when full.
+     */
+    @Value("${notification.audit.overflow-policy:BLOCK}")
+    private String overflowPolicy;
+    
+    @Value("${notification.audit.block-timeout-ms:1000}")
+    private long blockTimeoutMs;
+    
+    private BlockingQueue<AuditEvent> queue;
+    private Counter dropped;
+    private Counter written;
+    private Thread flusher;
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        dropped = meterRegistry.counter("audit.events.dropped");
+        written = meterRegistry.counter("audit.events.written");
+        Gauge.builder("audit.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        
+        running = true;
+        flusher = new Thread(this::flushLoop, "audit-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        if (!queue.isEmpty()) {
+            log.warn("Audit writer stopped with {} events still queued", queue.size());
+        }
+    }
+    
+    public void logAction(Integer adminId, String actionType, String entityType,
+                         String entityId, Map<String, Object> oldValue,
                          Map<String, Object> newValue, String ipAddress, String userAgent) {
-        try {
-            AuditLog auditLog = AuditLog.builder()
-                    .actionType(actionType)
-                    .entityType(entityType)
-                    .entityId(entityId)
-                    .oldValue(oldValue)
-                    .newValue(newValue)
-                    .ipAddress(ipAddress != null ? ipAddress : "0.0.0.0")
-                    .userAgent(userAgent)
-                    .build();
-            
-            auditLogRepository.save(auditLog);
-            log.debug("Audit log created: {} - {} - {}", actionType, entityType, entityId);
-        } catch (Exception e) {
-            log.error("Failed to create audit log: {}", e.getMessage(), e);
+        AuditEvent event = new AuditEvent(adminId, actionType, entityType, entityId, oldValue, newValue,
+                ipAddress != null ? ipAddress : "0.0.0.0", userAgent, LocalDateTime.now());
+        
+        boolean queued;
+        if ("DROP".equalsIgnoreCase(overflowPolicy)) {
+            queued = queue.offer(event);
+        } else {
+            try {
+                queued = queue.offer(event, blockTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        }
+        
+        if (!queued) {
+            dropped.increment();
+            log.warn("Audit queue full, dropped event: {} - {} - {}", actionType, entityType, entityId);
         }
     }
     
-    @Async
-    @Transactional
-    public void logNotificationSend(String notificationId, String channel, String recipient, 
+    public void logNotificationSend(String notificationId, String channel, String recipient,
                                    String status, String ipAddress) {
         logAction(null, "SEND_NOTIFICATION", "NOTIFICATION", notificationId,
                 null, Map.of(
@@ -52,9 +127,7 @@ public class AuditService {
                 ), ipAddress, null);
     }
     
-    @Async
-    @Transactional
-    public void logNotificationStatusChange(String notificationId, String oldStatus, 
+    public void logNotificationStatusChange(String notificationId, String oldStatus,
                                            String newStatus, String errorMessage) {
         logAction(null, "STATUS_CHANGE", "NOTIFICATION", notificationId,
                 Map.of("status", oldStatus),
@@ -62,6 +135,95 @@ public class AuditService {
                 "system", "NotificationService");
     }
     
+    private void flushLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                
+                long deadline = System.currentTimeMillis() + flushIntervalMs;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    AuditEvent next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Treated as shutdown; the loop still drains what is queued
+                running = false;
+            }
+            
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Writes the batch in one transaction; if it fails, falls back to inserting the events one by one
+     * so a single bad row (oversized entity_id, missing admin) drops only itself.
+     */
+    private void write(List<AuditEvent> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            return;
+        } catch (Exception e) {
+            log.warn("Batch write of {} audit events failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+        
+        for (AuditEvent event : batch) {
+            try {
+                insert(List.of(event));
+            } catch (Exception e) {
+                log.error("Failed to write audit event {} {}/{}: {}",
+                        event.actionType(), event.entityType(), event.entityId(), e.getMessage());
+                dropped.increment();
+            }
+        }
+    }
+    
+    private void insert(List<AuditEvent> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+            if (event.adminId() != null) {
+                ps.setInt(1, event.adminId());
+            } else {
+                ps.setNull(1, Types.INTEGER);
+            }
+            ps.setString(2, event.actionType());
+            ps.setString(3, event.entityType());
+            ps.setString(4, event.entityId());
+            ps.setString(5, toJson(event.oldValue()));
+            ps.setString(6, toJson(event.newValue()));
+            ps.setString(7, event.ipAddress());
+            ps.setString(8, event.userAgent());
+            ps.setTimestamp(9, Timestamp.valueOf(event.createdAt()));
+        });
+        written.increment(batch.size());
+        log.debug("Wrote {} audit events", batch.size());
+    }
+    
+    private String toJson(Map<String, Object> value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Audit value is not serializable", e);
+        }
+    }
+    
     private String maskRecipient(String recipient) {
         if (recipient == null) return null;
         if (recipient.contains("@")) {
@@ -77,4 +239,9 @@ public class AuditService {
         }
         return "***";
     }
+    
+    private record AuditEvent(Integer adminId, String actionType, String entityType, String entityId,
+                              Map<String, Object> oldValue, Map<String, Object> newValue,
+                              String ipAddress, String userAgent, LocalDateTime createdAt) {
+    }
 }
@@ -0,0 +1,38 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+
+import java.util.List;
+
+/**
+ * Delivery implementation for one provider of a channel, picked up by {@link ChannelSenderRegistry}.
+ * A channel may have several providers; each claimed group goes to the highest-priority one whose
+ * circuit breaker lets calls through.
+ * <p>
+ * Senders get notifications already claimed (SENDING) by the dispatcher and run on their channel's
+ * own bulkhead threads, outside of any transaction. They must record every outcome through
+ * {@link DeliveryStatusService}; a notification left SENDING is reclaimed only after the lease timeout.
+ */
+public interface ChannelSender {
+    
+    ChannelType channel();
+    
+    /**
+     * Provider name as in channel_configs.provider_name, which holds its priority and health.
+     */
+    String provider();
+    
+    /**
+     * @return number of notifications accepted by the provider
+     */
+    int sendBatch(List<Notification> notifications);
+    
+    /**
+     * Whether the sender is configured to deliver at all. Channels without an available provider
+     * are not claimed, and /send rejects them.
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+package kg.notifications.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.util.Bulkhead;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discovers {@link ChannelSender} beans and gives every channel its own {@link Bulkhead}.
+ * <p>
+ * Each bulkhead is sized from {@code notification.channels.<channel>.*}, falling back to
+ * {@code notification.channels.defaults.*}, so a slow provider can only exhaust its own threads
+ * and queue while the other channels keep sending. In virtual mode the number of sends in flight
+ * is {@code notification.dispatch.virtual.channel-limits.<channel>} instead, falling back to
+ * {@code default-channel-limit}.
+ * <p>
+ * Sends are routed to the channel's available providers in channel_configs priority order,
+ * skipping those whose circuit breaker is open or whose daily limit is used up. A channel with
+ * no such provider is not claimed until one recovers.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChannelSenderRegistry {
+    
+    private static final String PREFIX = "notification.channels.";
+    
+    private final List<ChannelSender> senders;
+    private final ProviderHealthService providerHealth;
+    private final DailyQuotaService dailyQuota;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * platform: a fixed pool of bulkhead threads, each sending a whole claimed group.
+     * virtual: every notification is a separate task on its own virtual thread.
+     */
+    @Value("${notification.dispatch.mode:platform}")
+    private String mode;
+    
+    private final Map<ChannelType, List<ChannelSender>> byChannel = new EnumMap<>(ChannelType.class);
+    private final Map<ChannelType, Bulkhead> bulkheads = new EnumMap<>(ChannelType.class);
+    
+    @PostConstruct
+    public void init() {
+        for (ChannelSender sender : senders) {
+            List<ChannelSender> providers = byChannel.computeIfAbsent(sender.channel(), c -> new ArrayList<>());
+            for (ChannelSender existing : providers) {
+                if (existing.provider().equals(sender.provider())) {
+                    throw new IllegalStateException("Two senders for " + sender.channel() + "/" + sender.provider()
+                            + ": " + existing.getClass().getSimpleName() + ", " + sender.getClass().getSimpleName());
+                }
+            }
+            providers.add(sender);
+        }
+        
+        byChannel.forEach((channel, providers) -> {
+            String name = channel.name().toLowerCase();
+            int capacity = setting(name, "queue-capacity", 500);
+            int queueTimeoutMs = setting(name, "queue-timeout-ms", 60000);
+            Bulkhead bulkhead = isPerNotification()
+                    ? Bulkhead.virtual(name, virtualLimit(name), capacity, queueTimeoutMs)
+                    : Bulkhead.platform(name, setting(name, "concurrency", 4), capacity, queueTimeoutMs,
+                            new CustomizableThreadFactory("send-" + name + "-"));
+            bulkheads.put(channel, bulkhead);
+            Gauge.builder("notification.channel.queued", bulkhead, Bulkhead::queued)
+                    .tag("channel", channel.name())
+                    .register(meterRegistry);
+            Gauge.builder("notification.channel.active", bulkhead, Bulkhead::active)
+                    .tag("channel", channel.name())
+                    .register(meterRegistry);
+            for (ChannelSender sender : providers) {
+                log.info("Channel {} provider '{}' via {} (available={})",
+                        channel, sender.provider(), sender.getClass().getSimpleName(), sender.isAvailable());
+            }
+            log.info("Channel {} bulkhead concurrency={} capacity={}", channel, bulkhead.concurrency(), bulkhead.capacity());
+        });
+    }
+    
+    /**
+     * The provider to send through right now: the available one with the lowest priority value
+     * whose circuit is not open and which has daily quota left, if any.
+     */
+    public Optional<ChannelSender> sender(ChannelType channel) {
+        ChannelSender best = null;
+        int bestPriority = Integer.MAX_VALUE;
+        for (ChannelSender sender : byChannel.getOrDefault(channel, List.of())) {
+            if (!sender.isAvailable() || !providerHealth.isCallPermitted(channel, sender.provider())
+                    || !dailyQuota.hasQuota(channel, sender.provider())) {
+                continue;
+            }
+            int priority = providerHealth.priority(channel, sender.provider());
+            if (best == null || priority < bestPriority) {
+                best = sender;
+                bestPriority = priority;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+    
+    /**
+     * All providers of the channel, configured or not.
+     */
+    public List<ChannelSender> providers(ChannelType channel) {
+        return Collections.unmodifiableList(byChannel.getOrDefault(channel, List.of()));
+    }
+    
+    public Bulkhead bulkhead(ChannelType channel) {
+        return bulkheads.get(channel);
+    }
+    
+    public boolean isSupported(ChannelType channel) {
+        return byChannel.getOrDefault(channel, List.of()).stream().anyMatch(ChannelSender::isAvailable);
+    }
+    
+    /**
+     * Channels with an available provider, regardless of bulkhead load and provider health.
+     */
+    public Set<ChannelType> supportedChannels() {
+        Set<ChannelType> channels = EnumSet.noneOf(ChannelType.class);
+        byChannel.keySet().stream().filter(this::isSupported).forEach(channels::add);
+        return Collections.unmodifiableSet(channels);
+    }
+    
+    /**
+     * Channels whose bulkhead can take more work right now and that have a provider to route it to.
+     */
+    public Set<ChannelType> channelsWithCapacity() {
+        Set<ChannelType> channels = EnumSet.noneOf(ChannelType.class);
+        bulkheads.forEach((channel, bulkhead) -> {
+            if (bulkhead.hasCapacity() && sender(channel).isPresent()) {
+                channels.add(channel);
+            }
+        });
+        return channels;
+    }
+    
+    public boolean isPerNotification() {
+        return "virtual".equalsIgnoreCase(mode);
+    }
+    
+    /**
+     * Drains queued sends for up to 30s; whatever is left stays SENDING until the lease timeout.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            bulkhead.executor().shutdown();
+        }
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            if (!bulkhead.executor().awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Channel {} sends did not finish in time", bulkhead.name());
+                bulkhead.executor().shutdownNow();
+            }
+        }
+    }
+    
+    private int virtualLimit(String channel) {
+        Integer defaults = environment.getProperty("notification.dispatch.virtual.default-channel-limit", Integer.class, 16);
+        return environment.getProperty("notification.dispatch.virtual.channel-limits." + channel, Integer.class, defaults);
+    }
+    
+    private int setting(String channel, String key, int fallback) {
+        Integer defaults = environment.getProperty(PREFIX + "defaults." + key, Integer.class, fallback);
+        return environment.getProperty(PREFIX + channel + "." + key, Integer.class, defaults);
+    }
+}
@@ -0,0 +1,170 @@
+package kg.notifications.service;
+
+import kg.notifications.exception.RateLimitExceededException;
+import kg.notifications.security.ApiClientPrincipal;
+import kg.notifications.util.TokenBucket;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces ApiClient.rateLimit (requests per period) with one token bucket per client.
+ * <p>
+ * Buckets live on the authenticated principal, so the request path is a single CAS with no lookup.
+ * In {@code postgres} mode every replica still decides locally, and once per sync interval publishes
+ * its usage to rate_limit_windows and charges its buckets with what the other replicas consumed
+ * in the same window. The shared limit is therefore enforced with at most one sync interval of lag.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClientRateLimiter {
+    
+    private static final String SYNC_SQL =
+            "INSERT INTO rate_limit_windows (client_id, window_start, request_count) " +
+            "SELECT c, ?, n FROM unnest(?::int[], ?::bigint[]) AS t(c, n) " +
+            "ON CONFLICT (client_id, window_start) " +
+            "DO UPDATE SET request_count = rate_limit_windows.request_count + EXCLUDED.request_count " +
+            "RETURNING client_id, request_count";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${notification.rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    /**
+     * memory: per-replica buckets. postgres: buckets shared across replicas through rate_limit_windows.
+     */
+    @Value("${notification.rate-limit.mode:memory}")
+    private String mode;
+    
+    @Value("${notification.rate-limit.period-ms:60000}")
+    private long periodMs;
+    
+    @Value("${notification.rate-limit.window-retention-ms:3600000}")
+    private long windowRetentionMs;
+    
+    private final Map<Integer, ClientWindow> windows = new ConcurrentHashMap<>();
+    
+    /**
+     * Returns the client's bucket, creating it on first use; limit changes apply to the existing bucket.
+     */
+    public TokenBucket bucketFor(Integer clientId, int rateLimit) {
+        ClientWindow window = windows.computeIfAbsent(clientId,
+                id -> new ClientWindow(new TokenBucket(rateLimit, TimeUnit.MILLISECONDS.toNanos(periodMs)), rateLimit));
+        if (window.rateLimit != rateLimit) {
+            window.bucket.configure(rateLimit, TimeUnit.MILLISECONDS.toNanos(periodMs));
+            window.rateLimit = rateLimit;
+        }
+        return window.bucket;
+    }
+    
+    /**
+     * Takes {@code permits} from the client's bucket or throws {@link RateLimitExceededException}.
+     * A request needing more permits than the whole limit could never pass and is rejected as invalid.
+     */
+    public void acquire(ApiClientPrincipal client, int permits) {
+        if (!enabled) {
+            return;
+        }
+        if (permits > client.rateLimitBucket().capacity()) {
+            throw new IllegalArgumentException("Размер пакета " + permits + " превышает лимит клиента: "
+                    + client.rateLimit() + " в " + periodMs / 1000 + " с");
+        }
+        long waitNanos = client.rateLimitBucket().tryAcquire(permits, System.nanoTime());
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+            throw new RateLimitExceededException(
+                    "Превышен лимит запросов: " + client.rateLimit() + " в " + periodMs / 1000 + " с", retryAfter);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.rate-limit.sync-interval-ms:1000}")
+    public void sync() {
+        if (!enabled || !"postgres".equalsIgnoreCase(mode) || windows.isEmpty()) {
+            return;
+        }
+        
+        long nowMillis = System.currentTimeMillis();
+        long windowStart = nowMillis - nowMillis % periodMs;
+        Integer[] clientIds = new Integer[windows.size()];
+        Long[] counts = new Long[clientIds.length];
+        Map<Integer, Long> published = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<Integer, ClientWindow> entry : windows.entrySet()) {
+            if (i == clientIds.length) {
+                break;
+            }
+            ClientWindow window = entry.getValue();
+            if (window.windowStart != windowStart) {
+                window.windowStart = windowStart;
+                window.seenTotal = 0;
+            }
+            long local = window.bucket.drainAcquired();
+            clientIds[i] = entry.getKey();
+            counts[i] = local;
+            published.put(entry.getKey(), local);
+            i++;
+        }
+        
+        try {
+            List<long[]> totals = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SYNC_SQL);
+                Array ids = con.createArrayOf("integer", clientIds);
+                Array ns = con.createArrayOf("bigint", counts);
+                ps.setTimestamp(1, new Timestamp(windowStart));
+                ps.setArray(2, ids);
+                ps.setArray(3, ns);
+                return ps;
+            }, (rs, rowNum) -> new long[]{rs.getInt(1), rs.getLong(2)});
+            
+            long now = System.nanoTime();
+            for (long[] row : totals) {
+                ClientWindow window = windows.get((int) row[0]);
+                if (window == null) {
+                    continue;
+                }
+                // Whatever grew beyond our own contribution was consumed by other replicas
+                long remote = row[1] - window.seenTotal - published.getOrDefault((int) row[0], 0L);
+                window.seenTotal = row[1];
+                window.bucket.charge(remote, now);
+            }
+        } catch (Exception e) {
+            log.warn("Rate limit window sync failed: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.rate-limit.cleanup-interval-ms:600000}")
+    public void cleanupWindows() {
+        if (!enabled || !"postgres".equalsIgnoreCase(mode)) {
+            return;
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM rate_limit_windows WHERE window_start < ?",
+                new Timestamp(System.currentTimeMillis() - windowRetentionMs));
+        log.debug("Deleted {} expired rate limit windows", deleted);
+    }
+    
+    private static final class ClientWindow {
+        private final TokenBucket bucket;
+        private volatile int rateLimit;
+        private long windowStart;
+        private long seenTotal;
+        
+        private ClientWindow(TokenBucket bucket, int rateLimit) {
+            this.bucket = bucket;
+            this.rateLimit = rateLimit;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package kg.notifications.service;
+
+import jakarta.annotation.PreDestroy;
+import kg.notifications.entity.ChannelType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Enforces channel_configs.daily_limit per (channel, provider) without a write per message.
+ * <p>
+ * Each instance reserves permits from the row in chunks of {@code chunk-size}: one
+ * UPDATE ... RETURNING adds to daily_sent_count, capped at daily_limit, and the permits are then
+ * handed out from an in-memory counter. daily_sent_count therefore counts sends reserved by all
+ * replicas, and together they never exceed the limit. The count belongs to daily_count_date;
+ * the first reservation of a new day starts it from zero, and a job at midnight resets the rows
+ * so the column reads correctly before any send. Unused permits are returned on shutdown.
+ * Providers without a row or without a limit are not counted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailyQuotaService {
+    
+    private static final String RESERVE_SQL =
+            "WITH cur AS (" +
+            "SELECT config_id, daily_limit, " +
+            "CASE WHEN daily_count_date = ? THEN daily_sent_count ELSE 0 END AS used " +
+            "FROM channel_configs " +
+            "WHERE channel_name = ? AND provider_name = ? AND daily_limit IS NOT NULL " +
+            "FOR UPDATE) " +
+            "UPDATE channel_configs c " +
+            "SET daily_sent_count = cur.used + LEAST(?, GREATEST(cur.daily_limit - cur.used, 0)), " +
+            "daily_count_date = ? " +
+            "FROM cur WHERE c.config_id = cur.config_id " +
+            "RETURNING c.daily_sent_count - cur.used";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${notification.quota.chunk-size:100}")
+    private int chunkSize;
+    
+    private final Map<ProviderKey, Quota> quotas = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    
+    private record ProviderKey(ChannelType channel, String provider) {
+    }
+    
+    private static final class Quota {
+        final AtomicInteger local = new AtomicInteger();
+        volatile Integer limit;
+        volatile LocalDate day;
+        volatile boolean exhausted;
+    }
+    
+    /**
+     * Takes up to {@code count} sends from the provider's quota for today.
+     *
+     * @return how many may be sent; the rest should wait or go to another provider
+     */
+    public int acquire(ChannelType channel, String provider, int count) {
+        Quota quota = quota(channel, provider);
+        if (quota == null || quota.limit == null) {
+            return count;
+        }
+        
+        LocalDate today = LocalDate.now();
+        rollOver(quota, today);
+        int granted = take(quota.local, count);
+        if (granted == count) {
+            return count;
+        }
+        
+        synchronized (quota) {
+            granted += take(quota.local, count - granted);
+            while (granted < count && !quota.exhausted) {
+                int reserved = reserve(channel, provider, quota, today, Math.max(chunkSize, count - granted));
+                if (reserved == 0) {
+                    quota.exhausted = true;
+                    log.warn("Daily limit of {} reached for {}/{}", quota.limit, channel, provider);
+                    break;
+                }
+                int used = Math.min(reserved, count - granted);
+                granted += used;
+                quota.local.addAndGet(reserved - used);
+            }
+        }
+        return granted;
+    }
+    
+    /**
+     * Whether the provider may still have quota today; a cheap check for routing, {@link #acquire} decides.
+     */
+    public boolean hasQuota(ChannelType channel, String provider) {
+        Quota quota = quota(channel, provider);
+        if (quota == null || quota.limit == null || !LocalDate.now().equals(quota.day)) {
+            return true;
+        }
+        return quota.local.get() > 0 || !quota.exhausted;
+    }
+    
+    /**
+     * Re-reads limits, so changed or removed ones apply, and clears the exhausted mark of
+     * providers that have room again (limit raised, or permits returned by another replica).
+     */
+    @Scheduled(fixedDelayString = "${notification.quota.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            LocalDate today = LocalDate.now();
+            jdbcTemplate.query(
+                    "SELECT channel_name, provider_name, daily_limit, daily_sent_count, daily_count_date " +
+                    "FROM channel_configs", rs -> {
+                        ProviderKey key = new ProviderKey(ChannelType.valueOf(rs.getString(1)), rs.getString(2));
+                        Quota quota = quotas.computeIfAbsent(key, k -> new Quota());
+                        int limit = rs.getInt(3);
+                        quota.limit = rs.wasNull() ? null : limit;
+                        Date day = rs.getDate(5);
+                        int used = day != null && day.toLocalDate().equals(today) ? rs.getInt(4) : 0;
+                        if (quota.exhausted && (quota.limit == null || used < quota.limit)) {
+                            quota.exhausted = false;
+                        }
+                    });
+            loaded = true;
+        } catch (Exception e) {
+            log.warn("Could not load daily limits: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(cron = "${notification.quota.rollover-cron:0 0 0 * * *}")
+    public void rollOverAll() {
+        LocalDate today = LocalDate.now();
+        try {
+            int rows = jdbcTemplate.update(
+                    "UPDATE channel_configs SET daily_sent_count = 0, daily_count_date = ? " +
+                    "WHERE daily_count_date IS NULL OR daily_count_date < ?",
+                    Date.valueOf(today), Date.valueOf(today));
+            log.info("Daily quotas rolled over to {} ({} providers)", today, rows);
+        } catch (Exception e) {
+            log.warn("Daily quota rollover failed: {}", e.getMessage());
+        }
+        quotas.values().forEach(quota -> rollOver(quota, today));
+    }
+    
+    /**
+     * Gives today's unused permits back so other replicas can use them.
+     */
+    @PreDestroy
+    public void shutdown() {
+        LocalDate today = LocalDate.now();
+        List<Object[]> batch = new ArrayList<>();
+        quotas.forEach((key, quota) -> {
+            int unused = quota.local.getAndSet(0);
+            if (unused > 0 && today.equals(quota.day)) {
+                batch.add(new Object[]{unused, key.channel().name(), key.provider(), Date.valueOf(today)});
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE channel_configs SET daily_sent_count = GREATEST(daily_sent_count - ?, 0) " +
+                    "WHERE channel_name = ? AND provider_name = ? AND daily_count_date = ?", batch);
+        } catch (Exception e) {
+            log.warn("Could not return unused daily quota: {}", e.getMessage());
+        }
+    }
+    
+    private Quota quota(ChannelType channel, String provider) {
+        if (!loaded) {
+            refresh();
+        }
+        return quotas.get(new ProviderKey(channel, provider));
+    }
+    
+    private int reserve(ChannelType channel, String provider, Quota quota, LocalDate today, int want) {
+        Date day = Date.valueOf(today);
+        Integer reserved = jdbcTemplate.query(RESERVE_SQL,
+                rs -> rs.next() ? rs.getInt(1) : null,
+                day, channel.name(), provider, want, day);
+        if (reserved == null) {
+            // The limit was removed since the last refresh
+            quota.limit = null;
+            return want;
+        }
+        return reserved;
+    }
+    
+    /**
+     * Starts a new day: permits reserved for the previous one are void.
+     */
+    private static void rollOver(Quota quota, LocalDate today) {
+        if (today.equals(quota.day)) {
+            return;
+        }
+        synchronized (quota) {
+            if (!today.equals(quota.day)) {
+                quota.local.set(0);
+                quota.exhausted = false;
+                quota.day = today;
+            }
+        }
+    }
+    
+    private static int take(AtomicInteger counter, int wanted) {
+        while (true) {
+            int available = counter.get();
+            int taken = Math.min(available, wanted);
+            if (taken <= 0 || counter.compareAndSet(available, available - taken)) {
+                return Math.max(taken, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import kg.notifications.repository.NotificationStatusRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Records the outcome of send attempts made by {@link ChannelSender}s: bulk SENT updates for
+ * accepted messages, and retry scheduling or FAILED for rejected ones.
+ * <p>
+ * Outcomes only apply to notifications still held under this worker's claim. If the lease expired
+ * and the row was reclaimed or expired meanwhile, the late result is logged and skipped: no status
+ * event, retry timer or audit entry is produced for it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeliveryStatusService {
+    
+    private final NotificationStatusRepository notificationStatusRepository;
+    private final AuditService auditService;
+    private final RetryScheduler retryScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${notification.retry.intervals:60000,300000,900000,3600000,14400000}")
+    private long[] retryIntervals;
+    
+    /**
+     * Marks claimed notifications SENT with a single bulk update, storing providerMessageId where set.
+     */
+    public void markSent(List<Notification> sent) {
+        if (sent.isEmpty()) {
+            return;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        Set<UUID> updated = notificationStatusRepository.markSent(sent, now);
+        
+        for (Notification notification : sent) {
+            if (!updated.contains(notification.getNotificationId())) {
+                continue;
+            }
+            notification.setStatus(NotificationStatus.SENT);
+            notification.setSentAt(now);
+            notification.setErrorMessage(null);
+            notification.setErrorCode(null);
+            eventPublisher.publishEvent(NotificationStatusEvent.of(notification, NotificationStatus.SENDING));
+            
+            auditService.logNotificationStatusChange(
+                    notification.getNotificationId().toString(),
+                    "SENDING", "SENT", null);
+        }
+        log.info("Sent {} {} notifications", updated.size(), sent.get(0).getChannelType());
+        logLostClaims(sent.size() - updated.size(), "SENT");
+    }
+    
+    /**
+     * One failed attempt; a provider-supplied {@code retryAt} (e.g. from retry-after) replaces the backoff.
+     */
+    public record Failure(Notification notification, String errorMessage, String errorCode, LocalDateTime retryAt) {
+        
+        public Failure(Notification notification, String errorMessage, String errorCode) {
+            this(notification, errorMessage, errorCode, null);
+        }
+    }
+    
+    /**
+     * Counts a failed attempt: schedules the next retry with backoff, or marks the notification
+     * FAILED once max retries are used up.
+     */
+    public void markFailed(Notification notification, String errorMessage, String errorCode) {
+        markFailed(List.of(new Failure(notification, errorMessage, errorCode)));
+    }
+    
+    public void markFailed(Notification notification, String errorMessage, String errorCode, LocalDateTime retryAt) {
+        markFailed(List.of(new Failure(notification, errorMessage, errorCode, retryAt)));
+    }
+    
+    /**
+     * Records a group of failed attempts with a single bulk update.
+     */
+    public void markFailed(List<Failure> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        
+        List<Notification> notifications = new ArrayList<>(failures.size());
+        for (Failure failure : failures) {
+            Notification notification = failure.notification();
+            notification.setRetryCount(notification.getRetryCount() + 1);
+            notification.setErrorMessage(failure.errorMessage());
+            notification.setErrorCode(failure.errorCode());
+            
+            if (notification.getRetryCount() >= notification.getMaxRetries()) {
+                notification.setStatus(NotificationStatus.FAILED);
+                notification.setNextRetryAt(null);
+                log.warn("Max retries reached for notification {}", notification.getNotificationId());
+            } else {
+                notification.setStatus(NotificationStatus.PENDING);
+                notification.setNextRetryAt(failure.retryAt() != null
+                        ? failure.retryAt() : calculateNextRetry(notification.getRetryCount()));
+                log.info("Scheduled retry {} for notification {} at {}",
+                        notification.getRetryCount(), notification.getNotificationId(), notification.getNextRetryAt());
+            }
+            notifications.add(notification);
+        }
+        
+        Set<UUID> updated = notificationStatusRepository.markFailed(notifications, LocalDateTime.now());
+        logLostClaims(notifications.size() - updated.size(), "failed");
+        
+        for (Notification notification : notifications) {
+            if (!updated.contains(notification.getNotificationId())) {
+                continue;
+            }
+            eventPublisher.publishEvent(NotificationStatusEvent.of(notification, NotificationStatus.SENDING));
+            if (notification.getStatus() == NotificationStatus.PENDING) {
+                retryScheduler.schedule(notification.getNotificationId(), notification.getNextRetryAt());
+            }
+            auditService.logNotificationStatusChange(
+                    notification.getNotificationId().toString(),
+                    "SENDING", notification.getStatus().name(), notification.getErrorMessage());
+        }
+    }
+    
+    /**
+     * Hands a claimed notification back for a later attempt without counting one, for sends the
+     * sender chose not to make yet (e.g. a rate limit slot too far ahead).
+     */
+    public void defer(Notification notification, LocalDateTime at) {
+        if (!notificationStatusRepository.defer(notification, at, LocalDateTime.now())) {
+            logLostClaims(1, "deferred");
+            return;
+        }
+        notification.setStatus(NotificationStatus.PENDING);
+        notification.setNextRetryAt(at);
+        retryScheduler.schedule(notification.getNotificationId(), at);
+    }
+    
+    private void logLostClaims(int count, String outcome) {
+        if (count > 0) {
+            log.warn("Skipped {} {} results for notifications no longer claimed by this worker", count, outcome);
+        }
+    }
+    
+    private LocalDateTime calculateNextRetry(int retryCount) {
+        // Exponential backoff from notification.retry.intervals: 1min, 5min, 15min, 1hr, 4hr
+        int index = Math.min(retryCount - 1, retryIntervals.length - 1);
+        return LocalDateTime.now().plusNanos(retryIntervals[index] * 1_000_000);
+    }
+}
@@ -1,119 +1,165 @@
 package kg.notifications.service;
 
 import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.internet.MimeMessage;
 import kg.notifications.entity.ChannelConfig;
 import kg.notifications.entity.ChannelType;
 import kg.notifications.entity.Notification;
-import kg.notifications.entity.NotificationStatus;
 import kg.notifications.repository.ChannelConfigRepository;
-import kg.notifications.repository.NotificationRepository;
+import kg.notifications.util.CircuitBreaker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class EmailService {
+public class EmailService implements ChannelSender {
+    
+    public static final String PROVIDER = "SMTP";
     
     private final JavaMailSender mailSender;
-    private final NotificationRepository notificationRepository;
+    private final SmtpTransportPool transportPool;
     private final ChannelConfigRepository channelConfigRepository;
-    private final AuditService auditService;
+    private final DeliveryStatusService deliveryStatusService;
+    private final ProviderHealthService providerHealth;
     
-    @Async
-    @Transactional
-    public CompletableFuture<Boolean> sendEmail(Notification notification) {
-        log.info("Sending email to: {}, subject: {}", 
-                maskEmail(notification.getRecipient()), notification.getSubject());
-        
-        // Update status to SENDING
-        notification.setStatus(NotificationStatus.SENDING);
-        notificationRepository.save(notification);
+    @Override
+    public ChannelType channel() {
+        return ChannelType.EMAIL;
+    }
+    
+    @Override
+    public String provider() {
+        return PROVIDER;
+    }
+    
+    /**
+     * Sends a notification already claimed (SENDING) by the dispatcher.
+     */
+    public boolean sendEmail(Notification notification) {
+        return sendBatch(List.of(notification)) == 1;
+    }
+    
+    /**
+     * Sends a group of claimed notifications over pooled SMTP sessions, as consecutive
+     * MAIL FROM/RCPT/DATA sequences; a session that reaches its message limit is swapped for a fresh
+     * one mid-group. Then marks all delivered rows SENT with a single bulk update. Runs on the EMAIL bulkhead, outside of any transaction,
+     * so no DB connection is held during SMTP I/O.
+     * <p>
+     * Every SMTP exchange is reported to the provider's circuit breaker; once it opens, the rest
+     * of the group is handed back untried instead of waiting out the relay's timeouts. Waiting too
+     * long for a pooled connection fails the rest with the retry backoff, without counting against
+     * the breaker.
+     *
+     * @return number of messages accepted by the server
+     */
+    @Override
+    public int sendBatch(List<Notification> notifications) {
+        String fromEmail = getFromEmail();
+        CircuitBreaker circuit = providerHealth.breaker(ChannelType.EMAIL, PROVIDER);
+        List<Notification> sent = new ArrayList<>(notifications.size());
+        SmtpTransportPool.PooledTransport transport = null;
         
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setTo(notification.getRecipient());
-            helper.setSubject(notification.getSubject() != null ? notification.getSubject() : "Notification");
-            helper.setText(notification.getMessageBody(), isHtml(notification.getMessageBody()));
-            
-            // Get sender email from config
-            String fromEmail = getFromEmail();
-            if (fromEmail != null) {
-                helper.setFrom(fromEmail);
+            for (int i = 0; i < notifications.size(); i++) {
+                Notification notification = notifications.get(i);
+                log.debug("Sending email to: {}, subject: {}",
+                        maskEmail(notification.getRecipient()), notification.getSubject());
+                long startedAt = 0;
+                try {
+                    MimeMessage message = createMessage(notification, fromEmail);
+                    if (!circuit.tryAcquire(System.nanoTime())) {
+                        deliveryStatusService.defer(notification, LocalDateTime.now());
+                        continue;
+                    }
+                    startedAt = System.nanoTime();
+                    if (transport == null) {
+                        try {
+                            transport = transportPool.borrow();
+                        } catch (SmtpTransportPool.BorrowTimeoutException e) {
+                            // Local pool saturation says nothing about the relay, so the breaker is left
+                            // alone; the attempt still counts, so a pool that never recovers ends in FAILED
+                            circuit.release();
+                            log.warn("{}; retrying {} emails with backoff", e.getMessage(), notifications.size() - i);
+                            List<DeliveryStatusService.Failure> failures = new ArrayList<>();
+                            for (Notification rest : notifications.subList(i, notifications.size())) {
+                                failures.add(new DeliveryStatusService.Failure(rest, e.getMessage(), "SMTP_POOL_EXHAUSTED"));
+                            }
+                            deliveryStatusService.markFailed(failures);
+                            break;
+                        }
+                    }
+                    transport.send(message);
+                    circuit.onSuccess(System.nanoTime() - startedAt, System.nanoTime());
+                    sent.add(notification);
+                    if (transportPool.isExhausted(transport)) {
+                        // Retired here rather than on release, so a group never pushes a connection past the limit
+                        transportPool.release(transport, false);
+                        transport = null;
+                    }
+                } catch (SendFailedException e) {
+                    // Rejected recipients don't affect the session itself, nor the relay's health
+                    if (startedAt != 0) {
+                        circuit.onSuccess(System.nanoTime() - startedAt, System.nanoTime());
+                    }
+                    log.error("Failed to send email to {}: {}", maskEmail(notification.getRecipient()), e.getMessage());
+                    deliveryStatusService.markFailed(notification, e.getMessage(), "MESSAGING_ERROR");
+                } catch (MessagingException e) {
+                    if (startedAt != 0) {
+                        circuit.onFailure(System.nanoTime() - startedAt, System.nanoTime());
+                    }
+                    log.error("Failed to send email to {}: {}", maskEmail(notification.getRecipient()), e.getMessage());
+                    if (transport != null) {
+                        // Connection state is unknown; continue the group on a fresh one
+                        transportPool.release(transport, true);
+                        transport = null;
+                    }
+                    deliveryStatusService.markFailed(notification, e.getMessage(), "MESSAGING_ERROR");
+                } catch (Exception e) {
+                    if (startedAt != 0) {
+                        circuit.onFailure(System.nanoTime() - startedAt, System.nanoTime());
+                    }
+                    log.error("Unexpected error sending email to {}: {}",
+                            maskEmail(notification.getRecipient()), e.getMessage(), e);
+                    if (transport != null) {
+                        transportPool.release(transport, true);
+                        transport = null;
+                    }
+                    deliveryStatusService.markFailed(notification, e.getMessage(), "UNKNOWN_ERROR");
+                }
+            }
+        } finally {
+            if (transport != null) {
+                transportPool.release(transport, false);
             }
-            
-            mailSender.send(message);
-            
-            // Update status to SENT
-            notification.setStatus(NotificationStatus.SENT);
-            notification.setSentAt(LocalDateTime.now());
-            notification.setErrorMessage(null);
-            notification.setErrorCode(null);
-            notificationRepository.save(notification);
-            
-            // Log success
-            auditService.logNotificationStatusChange(
-                    notification.getNotificationId().toString(),
-                    "SENDING", "SENT", null);
-            
-            log.info("Email sent successfully to: {}", maskEmail(notification.getRecipient()));
-            return CompletableFuture.completedFuture(true);
-            
-        } catch (MessagingException e) {
-            log.error("Failed to send email to {}: {}", maskEmail(notification.getRecipient()), e.getMessage());
-            
-            handleSendError(notification, e.getMessage(), "MESSAGING_ERROR");
-            return CompletableFuture.completedFuture(false);
-        } catch (Exception e) {
-            log.error("Unexpected error sending email to {}: {}", 
-                    maskEmail(notification.getRecipient()), e.getMessage(), e);
-            
-            handleSendError(notification, e.getMessage(), "UNKNOWN_ERROR");
-            return CompletableFuture.completedFuture(false);
         }
+        
+        deliveryStatusService.markSent(sent);
+        return sent.size();
     }
     
-    private void handleSendError(Notification notification, String errorMessage, String errorCode) {
-        notification.setRetryCount(notification.getRetryCount() + 1);
-        notification.setErrorMessage(errorMessage);
-        notification.setErrorCode(errorCode);
+    private MimeMessage createMessage(Notification notification, String fromEmail) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
         
-        if (notification.getRetryCount() >= notification.getMaxRetries()) {
-            notification.setStatus(NotificationStatus.FAILED);
-            log.warn("Max retries reached for notification {}", notification.getNotificationId());
-        } else {
-            notification.setStatus(NotificationStatus.PENDING);
-            notification.setNextRetryAt(calculateNextRetry(notification.getRetryCount()));
-            log.info("Scheduled retry {} for notification {} at {}", 
-                    notification.getRetryCount(), notification.getNotificationId(), notification.getNextRetryAt());
-        }
-        
-        notificationRepository.save(notification);
+        helper.setTo(notification.getRecipient());
+        helper.setSubject(notification.getSubject() != null ? notification.getSubject() : "Notification");
+        helper.setText(notification.getMessageBody(), isHtml(notification.getMessageBody()));
         
-        auditService.logNotificationStatusChange(
-                notification.getNotificationId().toString(),
-                "SENDING", notification.getStatus().name(), errorMessage);
-    }
-    
-    private LocalDateTime calculateNextRetry(int retryCount) {
-        // Exponential backoff: 1min, 5min, 15min, 1hr, 4hr
-        int[] intervals = {1, 5, 15, 60, 240};
-        int index = Math.min(retryCount - 1, intervals.length - 1);
-        return LocalDateTime.now().plusMinutes(intervals[index]);
+        if (fromEmail != null) {
+            helper.setFrom(fromEmail);
+        }
+        return message;
     }
     
     private boolean isHtml(String content) {
@@ -123,7 +169,7 @@ public class EmailService {
     
     private String getFromEmail() {
         try {
-            return channelConfigRepository.findByChannelName(ChannelType.EMAIL)
+            return channelConfigRepository.findByChannelNameAndProviderName(ChannelType.EMAIL, PROVIDER)
                     .map(config -> {
                         Map<String, Object> settings = config.getSettings();
                         if (settings != null && settings.containsKey("from_email")) {
@@ -0,0 +1,140 @@
+package kg.notifications.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves PENDING notifications past their expires_at to EXPIRED, together with expired SENDING
+ * ones whose claim lease ran out: dispatch no longer reclaims those, so without this a worker
+ * crash shortly before expires_at would leave them SENDING with no final status.
+ * <p>
+ * Each chunk is one autocommitted UPDATE over at most {@code chunk-size} rows picked from
+ * idx_notifications_expiry with FOR UPDATE SKIP LOCKED, so row locks last a single statement and
+ * rows being claimed by dispatch workers (or another replica's sweeper) are simply left for the
+ * next chunk. Rows are addressed by (notification_id, created_at) to keep partition pruning.
+ * Every chunk writes one aggregated audit entry; the run logs its throughput.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExpirySweeper {
+    
+    private static final String EXPIRE_SQL =
+            "UPDATE notifications n SET status = 'EXPIRED', updated_at = ?, " +
+            "error_code = 'EXPIRED', error_message = 'Notification expired before delivery' " +
+            "FROM (SELECT notification_id, created_at, status FROM notifications " +
+            "      WHERE expires_at < ? " +
+            "      AND (status = 'PENDING' OR (status = 'SENDING' AND updated_at < ?)) " +
+            "      ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED) e " +
+            "WHERE n.notification_id = e.notification_id AND n.created_at = e.created_at " +
+            "RETURNING n.notification_id, n.channel_type, n.created_at, n.client_id, n.callback_url, e.status";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${notification.expiry.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${notification.expiry.chunk-size:1000}")
+    private int chunkSize;
+    
+    @Value("${notification.expiry.max-chunks-per-run:500}")
+    private int maxChunksPerRun;
+    
+    @Value("${notification.expiry.chunk-pause-ms:20}")
+    private long chunkPauseMs;
+    
+    @Value("${notification.dispatch.lease-timeout-ms:300000}")
+    private long leaseTimeoutMs;
+    
+    private Counter expiredCounter;
+    
+    @PostConstruct
+    public void init() {
+        expiredCounter = meterRegistry.counter("notification.expired");
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.expiry.interval-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now();
+        long started = System.nanoTime();
+        int total = 0;
+        int chunks = 0;
+        
+        try {
+            while (chunks < maxChunksPerRun) {
+                int expired = expireChunk(cutoff);
+                if (expired == 0) {
+                    break;
+                }
+                total += expired;
+                chunks++;
+                if (expired < chunkSize) {
+                    break;
+                }
+                Thread.sleep(chunkPauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Expiry sweep failed after {} rows: {}", total, e.getMessage(), e);
+        }
+        
+        if (total > 0) {
+            double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-3);
+            log.info("Expired {} notifications in {} chunks, {} rows/s",
+                    total, chunks, Math.round(total / seconds));
+        }
+    }
+    
+    private int expireChunk(LocalDateTime cutoff) {
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationStatusEvent> events = jdbcTemplate.query(EXPIRE_SQL,
+                (rs, rowNum) -> new NotificationStatusEvent(
+                        rs.getObject(1, UUID.class),
+                        ChannelType.valueOf(rs.getString(2)),
+                        rs.getTimestamp(3).toLocalDateTime(),
+                        NotificationStatus.valueOf(rs.getString(6)),
+                        NotificationStatus.EXPIRED,
+                        null,
+                        rs.getInt(4),
+                        rs.getString(5),
+                        "EXPIRED"),
+                Timestamp.valueOf(now), Timestamp.valueOf(cutoff),
+                Timestamp.valueOf(now.minusNanos(leaseTimeoutMs * 1_000_000)), chunkSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        
+        events.forEach(eventPublisher::publishEvent);
+        expiredCounter.increment(events.size());
+        auditService.logAction(null, "EXPIRE_NOTIFICATIONS", "NOTIFICATION", null,
+                Map.of("status", "PENDING/SENDING"),
+                Map.of("status", "EXPIRED", "count", events.size(), "expiredBefore", cutoff.toString()),
+                "system", "ExpirySweeper");
+        return events.size();
+    }
+}
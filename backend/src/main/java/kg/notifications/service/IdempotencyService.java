@@ -0,0 +1,209 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.Notification;
+import kg.notifications.repository.IdempotencyKeyRepository;
+import kg.notifications.repository.NotificationRepository;
+import kg.notifications.util.BloomFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Two-tier idempotency lookup in front of notification_idempotency_keys.
+ * <p>
+ * Recently seen keys resolve through a bounded LRU of key to notification id. Keys the Bloom filter
+ * has never seen are answered as new without a database round trip. Both tiers are hints only:
+ * a key created by another replica or before the TTL window is caught when the key is claimed
+ * on insert, and the caller then returns the existing notification.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+    
+    private final NotificationRepository notificationRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    
+    @Value("${notification.idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+    
+    @Value("${notification.idempotency.lru-size:100000}")
+    private int lruSize;
+    
+    @Value("${notification.idempotency.bloom.expected-keys:1000000}")
+    private long expectedKeys;
+    
+    @Value("${notification.idempotency.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    @Value("${notification.idempotency.warmup-batch-size:5000}")
+    private int warmupBatchSize;
+    
+    private final Map<String, CachedKey> recent = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+            return size() > lruSize;
+        }
+    };
+    
+    // Two generations rotated every TTL, so a key stays visible for at least one full TTL
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile boolean warmedUp;
+    
+    /**
+     * Loads keys created within the TTL window into the Bloom filter. Until this finishes
+     * every key is looked up in the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        current = new BloomFilter(expectedKeys, falsePositiveRate);
+        previous = new BloomFilter(1, falsePositiveRate);
+        
+        LocalDateTime cursor = LocalDateTime.now().minusNanos(ttlMs * 1_000_000);
+        int loaded = 0;
+        List<Object[]> page;
+        do {
+            page = idempotencyKeyRepository.findCreatedAfter(cursor, warmupBatchSize);
+            for (Object[] row : page) {
+                current.put((String) row[0]);
+            }
+            loaded += page.size();
+            if (!page.isEmpty()) {
+                // Rows sharing the boundary timestamp may be skipped; claiming the key still covers them
+                cursor = (LocalDateTime) page.get(page.size() - 1)[1];
+            }
+        } while (page.size() == warmupBatchSize);
+        
+        warmedUp = true;
+        log.info("Idempotency filter warmed up with {} keys", loaded);
+    }
+    
+    @Scheduled(fixedRateString = "${notification.idempotency.ttl-ms:86400000}",
+            initialDelayString = "${notification.idempotency.ttl-ms:86400000}")
+    public void rotate() {
+        previous = current;
+        current = new BloomFilter(expectedKeys, falsePositiveRate);
+        log.debug("Rotated idempotency filter generation");
+    }
+    
+    /**
+     * Resolves a key to its existing notification, touching the database only when a tier hints it exists.
+     */
+    public Optional<Notification> findExisting(String key) {
+        UUID cachedId = cachedId(key);
+        if (cachedId != null) {
+            Optional<Notification> existing = notificationRepository.findById(cachedId);
+            if (existing.isPresent()) {
+                return existing;
+            }
+            evict(key);
+        }
+        
+        if (isDefinitelyNew(key)) {
+            return Optional.empty();
+        }
+        
+        Optional<Notification> existing = notificationRepository.findByIdempotencyKey(key);
+        existing.ifPresent(n -> remember(key, n.getNotificationId()));
+        return existing;
+    }
+    
+    /**
+     * Batch variant of {@link #findExisting}: only keys that may exist are looked up, in one query.
+     */
+    public Map<String, Notification> findExisting(Collection<String> keys) {
+        Map<String, Notification> found = new HashMap<>();
+        List<String> lookup = new ArrayList<>();
+        for (String key : keys) {
+            if (!isDefinitelyNew(key)) {
+                lookup.add(key);
+            }
+        }
+        if (!lookup.isEmpty()) {
+            notificationRepository.findByIdempotencyKeyIn(lookup).forEach(n -> {
+                found.put(n.getIdempotencyKey(), n);
+                remember(n.getIdempotencyKey(), n.getNotificationId());
+            });
+        }
+        return found;
+    }
+    
+    /**
+     * Records a committed key so later duplicates resolve without the index lookup.
+     */
+    public void remember(String key, UUID notificationId) {
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(key);
+        }
+        synchronized (recent) {
+            recent.put(key, new CachedKey(notificationId, System.currentTimeMillis() + ttlMs));
+        }
+    }
+    
+    /**
+     * Remembers keys once the current transaction commits, so rolled-back inserts are never cached.
+     */
+    public void rememberAfterCommit(Map<String, UUID> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            keys.forEach(this::remember);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                keys.forEach(IdempotencyService.this::remember);
+            }
+        });
+    }
+    
+    private boolean isDefinitelyNew(String key) {
+        if (!warmedUp) {
+            return false;
+        }
+        return !current.mightContain(key) && !previous.mightContain(key);
+    }
+    
+    private UUID cachedId(String key) {
+        synchronized (recent) {
+            CachedKey cached = recent.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt < System.currentTimeMillis()) {
+                recent.remove(key);
+                return null;
+            }
+            return cached.notificationId;
+        }
+    }
+    
+    private void evict(String key) {
+        synchronized (recent) {
+            recent.remove(key);
+        }
+    }
+    
+    private record CachedKey(UUID notificationId, long expiresAt) {
+    }
+}
@@ -0,0 +1,197 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import kg.notifications.config.SchedulingConfig;
+import kg.notifications.dto.LiveStatsDto;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.event.NotificationStatusEvent;
+import kg.notifications.util.MinuteCounterRing;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-channel delivery counters kept entirely in memory and pushed to dashboards over SSE.
+ * <p>
+ * Status events are counted into a ring of per-minute buckets covering the configured window
+ * and into a per-tick accumulator. Once per push interval a single snapshot is built and the same
+ * serialized payload is written to every subscriber, so the cost does not depend on how many
+ * dashboards are open and none of it touches the database. Counters start empty on each restart.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LiveStatsService {
+    
+    private static final ChannelType[] CHANNELS = ChannelType.values();
+    private static final Counter[] COUNTERS = Counter.values();
+    
+    private final ObjectMapper objectMapper;
+    
+    @Value("${notification.stats.live.window-minutes:1440}")
+    private int windowMinutes;
+    
+    @Value("${notification.stats.live.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    
+    private MinuteCounterRing ring;
+    private LongAdder[] tick;
+    private long startedAt;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    
+    /**
+     * What a status transition is counted as.
+     */
+    public enum Counter {
+        ACCEPTED, SENT, FAILED, RETRIED, EXPIRED;
+        
+        static Counter of(NotificationStatusEvent event) {
+            if (event.oldStatus() == null) {
+                return ACCEPTED;
+            }
+            return switch (event.newStatus()) {
+                case SENT, DELIVERED -> SENT;
+                case FAILED -> FAILED;
+                case PENDING -> RETRIED;
+                case EXPIRED -> EXPIRED;
+                case SENDING -> null;
+            };
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        ring = new MinuteCounterRing(windowMinutes, CHANNELS.length * COUNTERS.length);
+        tick = new LongAdder[CHANNELS.length * COUNTERS.length];
+        for (int i = 0; i < tick.length; i++) {
+            tick[i] = new LongAdder();
+        }
+        startedAt = System.currentTimeMillis();
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChange(NotificationStatusEvent event) {
+        Counter counter = Counter.of(event);
+        if (counter == null || event.oldStatus() == event.newStatus()) {
+            return;
+        }
+        int key = event.channel().ordinal() * COUNTERS.length + counter.ordinal();
+        ring.add(key, 1, System.currentTimeMillis());
+        tick[key].increment();
+    }
+    
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        
+        // First event carries the window only, so the client can render before the next tick
+        try {
+            emitter.send(SseEmitter.event().name("stats")
+                    .data(objectMapper.writeValueAsString(snapshot(new long[tick.length])), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        emitters.add(emitter);
+        log.debug("Live stats subscriber added, {} connected", emitters.size());
+        return emitter;
+    }
+    
+    @Scheduled(fixedRateString = "${notification.stats.live.push-interval-ms:1000}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void push() {
+        long[] delta = new long[tick.length];
+        for (int i = 0; i < tick.length; i++) {
+            delta[i] = tick[i].sumThenReset();
+        }
+        if (emitters.isEmpty()) {
+            return;
+        }
+        
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(snapshot(delta));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize live stats: {}", e.getMessage());
+            return;
+        }
+        
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("stats").data(payload, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the container completes the emitter
+                emitters.remove(emitter);
+            }
+        }
+    }
+    
+    /**
+     * Per-minute counters for the last {@code minutes} minutes, oldest first.
+     */
+    public List<LiveStatsDto.MinuteStatDto> minutes(int minutes) {
+        long currentMinute = System.currentTimeMillis() / 60_000;
+        int count = Math.min(Math.max(minutes, 1), windowMinutes);
+        List<LiveStatsDto.MinuteStatDto> result = new ArrayList<>(count);
+        for (long minute = currentMinute - count + 1; minute <= currentMinute; minute++) {
+            result.add(LiveStatsDto.MinuteStatDto.builder()
+                    .minute(toDateTime(minute * 60_000))
+                    .counts(toMap(ring.bucket(minute)))
+                    .build());
+        }
+        return result;
+    }
+    
+    private LiveStatsDto snapshot(long[] delta) {
+        long now = System.currentTimeMillis();
+        long windowFrom = now - windowMinutes * 60_000L;
+        long currentMinute = now / 60_000;
+        return LiveStatsDto.builder()
+                .at(toDateTime(now))
+                .delta(toMap(delta))
+                .lastMinute(toMap(ring.bucket(currentMinute - 1)))
+                .window(toMap(ring.sum(windowFrom, now)))
+                .windowStart(toDateTime(Math.max(windowFrom, startedAt)))
+                .build();
+    }
+    
+    private Map<String, Map<String, Long>> toMap(long[] counts) {
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        for (ChannelType channel : CHANNELS) {
+            Map<String, Long> byCounter = new LinkedHashMap<>();
+            for (Counter counter : COUNTERS) {
+                long value = counts[channel.ordinal() * COUNTERS.length + counter.ordinal()];
+                if (value != 0) {
+                    byCounter.put(counter.name(), value);
+                }
+            }
+            if (!byCounter.isEmpty()) {
+                result.put(channel.name(), byCounter);
+            }
+        }
+        return result;
+    }
+    
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,240 @@
+package kg.notifications.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.entity.Priority;
+import kg.notifications.util.WeightedFairScheduler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Worker pool draining the persistent dispatch queue.
+ * Each worker claims its own batch, so throughput scales with the number of workers and replicas.
+ * Priority lanes are served by weighted round-robin, with aging so no lane waits past max-wait-ms.
+ * Claimed groups are handed to their channel's bulkhead and sent there; a worker only claims
+ * channels whose bulkhead has room, so a slow provider backs up its own channel and nothing else.
+ * The provider is picked when a group starts sending, so a breaker that opened while the group
+ * was queued reroutes it or hands it back instead of letting it time out against a dead provider.
+ * The group then takes permits from the provider's daily quota; whatever doesn't fit goes back
+ * to PENDING for the next provider, or until the quota resets.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDispatcher {
+    
+    private final NotificationQueueService queueService;
+    private final ChannelSenderRegistry senderRegistry;
+    private final DailyQuotaService dailyQuota;
+    private final DeliveryStatusService deliveryStatusService;
+    
+    @Value("${notification.dispatch.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${notification.dispatch.workers:4}")
+    private int workers;
+    
+    @Value("${notification.dispatch.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${notification.dispatch.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+    
+    @Value("${notification.dispatch.lane-weights.high:8}")
+    private int highWeight;
+    
+    @Value("${notification.dispatch.lane-weights.normal:3}")
+    private int normalWeight;
+    
+    @Value("${notification.dispatch.lane-weights.low:1}")
+    private int lowWeight;
+    
+    @Value("${notification.dispatch.max-wait-ms:60000}")
+    private long maxWaitMs;
+    
+    @Value("${notification.dispatch.sender-error-defer-ms:30000}")
+    private long senderErrorDeferMs;
+    
+    private WeightedFairScheduler<Priority> laneScheduler;
+    private volatile boolean running;
+    private ExecutorService workerPool;
+    
+    @PostConstruct
+    public void init() {
+        Map<Priority, Integer> weights = new EnumMap<>(Priority.class);
+        weights.put(Priority.HIGH, highWeight);
+        weights.put(Priority.NORMAL, normalWeight);
+        weights.put(Priority.LOW, lowWeight);
+        laneScheduler = new WeightedFairScheduler<>(weights);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Notification dispatcher is disabled");
+            return;
+        }
+        running = true;
+        workerPool = senderRegistry.isPerNotification()
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dispatch-", 0).factory())
+                : Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("dispatch-"));
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::workerLoop);
+        }
+        log.info("Notification dispatcher started: workers={}, batchSize={}, channels={}, " +
+                "lane weights HIGH={} NORMAL={} LOW={}", workers, batchSize, senderRegistry.supportedChannels(),
+                highWeight, normalWeight, lowWeight);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (workerPool == null) {
+            return;
+        }
+        running = false;
+        queueService.signal();
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Dispatch workers did not finish in time; unfinished rows will be reclaimed after lease timeout");
+            workerPool.shutdownNow();
+        }
+    }
+    
+    private void workerLoop() {
+        while (running) {
+            try {
+                Set<ChannelType> channels = senderRegistry.channelsWithCapacity();
+                List<Notification> batch = channels.isEmpty() ? List.of() : claimNext(channels);
+                if (batch.isEmpty()) {
+                    // Also woken when a bulkhead finishes a task and may have room again
+                    queueService.awaitWork(pollIntervalMs);
+                    continue;
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Dispatch worker error: {}", e.getMessage(), e);
+                sleepQuietly();
+            }
+        }
+    }
+    
+    /**
+     * Claims from the lane whose weighted turn it is; starved lanes jump the order, empty lanes are skipped.
+     */
+    private List<Notification> claimNext(Set<ChannelType> channels) {
+        for (Priority lane : laneScheduler.nextOrder(queueService.starvedLanes(maxWaitMs))) {
+            List<Notification> batch = queueService.claimBatch(channels, lane, batchSize);
+            if (!batch.isEmpty()) {
+                return batch;
+            }
+        }
+        return List.of();
+    }
+    
+    private void dispatch(List<Notification> batch) {
+        Map<ChannelType, List<Notification>> byChannel = batch.stream()
+                .collect(Collectors.groupingBy(Notification::getChannelType,
+                        () -> new EnumMap<>(ChannelType.class), Collectors.toList()));
+        
+        byChannel.forEach((channel, group) -> {
+            if (senderRegistry.isPerNotification()) {
+                group.forEach(notification -> submit(channel, List.of(notification)));
+            } else {
+                submit(channel, group);
+            }
+        });
+    }
+    
+    /**
+     * Groups that waited in the bulkhead queue past its timeout go back to PENDING instead of
+     * being sent late, so other workers or replicas can pick them up.
+     */
+    private void submit(ChannelType channel, List<Notification> group) {
+        try {
+            senderRegistry.bulkhead(channel).submit(group.size(),
+                    () -> send(channel, group),
+                    () -> {
+                        log.warn("{} {} notifications timed out in the bulkhead queue, releasing",
+                                group.size(), channel);
+                        queueService.release(group);
+                    },
+                    queueService::signal);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the rows are reclaimed after the lease timeout
+            log.warn("{} bulkhead rejected {} notifications", channel, group.size());
+        }
+    }
+    
+    /**
+     * Runs on the channel's bulkhead: picks the provider, takes the group's share of its daily
+     * quota and sends that part; the rest is released.
+     */
+    private void send(ChannelType channel, List<Notification> group) {
+        ChannelSender sender = senderRegistry.sender(channel).orElse(null);
+        if (sender == null) {
+            log.debug("No healthy {} provider, releasing {} notifications", channel, group.size());
+            queueService.release(group);
+            return;
+        }
+        
+        List<Notification> allowed = group;
+        try {
+            int granted = dailyQuota.acquire(channel, sender.provider(), group.size());
+            if (granted < group.size()) {
+                log.debug("{}/{} daily quota left for {} of {} notifications",
+                        channel, sender.provider(), granted, group.size());
+                queueService.release(group.subList(granted, group.size()));
+                allowed = new ArrayList<>(group.subList(0, granted));
+            }
+        } catch (Exception e) {
+            log.error("Daily quota check for {} failed: {}", channel, e.getMessage());
+            queueService.release(group);
+            return;
+        }
+        if (allowed.isEmpty()) {
+            return;
+        }
+        
+        try {
+            sender.sendBatch(allowed);
+        } catch (Exception e) {
+            log.error("{} sender failed: {}", channel, e.getMessage(), e);
+            // Rows the sender had not resolved would otherwise stay SENDING until their lease expires
+            LocalDateTime retryAt = LocalDateTime.now().plusNanos(senderErrorDeferMs * 1_000_000);
+            allowed.stream()
+                    .filter(n -> n.getStatus() == NotificationStatus.SENDING)
+                    .forEach(n -> deliveryStatusService.defer(n, retryAt));
+        }
+    }
+    
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
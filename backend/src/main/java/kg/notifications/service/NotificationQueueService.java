@@ -0,0 +1,200 @@
+package kg.notifications.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.entity.Priority;
+import kg.notifications.repository.NotificationRepository;
+import kg.notifications.repository.NotificationStatusRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent dispatch queue backed by the notifications table, split into one lane per priority.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationQueueService {
+    
+    private final NotificationRepository notificationRepository;
+    private final NotificationStatusRepository notificationStatusRepository;
+    private final MeterRegistry meterRegistry;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${notification.dispatch.lease-timeout-ms:300000}")
+    private long leaseTimeoutMs;
+    
+    private final Object monitor = new Object();
+    private boolean signalled;
+    
+    private final Map<Priority, AtomicLong> depth = new EnumMap<>(Priority.class);
+    private final Map<Priority, AtomicLong> oldestReadyAt = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private Counter reclaimed;
+    
+    @PostConstruct
+    public void registerMetrics() {
+        for (Priority lane : Priority.values()) {
+            String tag = lane.name();
+            depth.put(lane, meterRegistry.gauge("notification.queue.depth",
+                    Tags.of("priority", tag), new AtomicLong()));
+            AtomicLong readyAt = new AtomicLong();
+            oldestReadyAt.put(lane, readyAt);
+            Gauge.builder("notification.queue.oldest.age", readyAt,
+                            v -> v.get() > 0 ? (System.currentTimeMillis() - v.get()) / 1000.0 : 0)
+                    .tag("priority", tag)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("notification.queue.wait")
+                    .description("Time from becoming ready to being claimed for dispatch")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+        reclaimed = Counter.builder("notification.queue.reclaimed")
+                .description("SENDING notifications claimed again after their lease expired")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Claims up to {@code limit} ready notifications of one priority lane and marks them SENDING.
+     * The returned entities are detached.
+     */
+    @Transactional
+    public List<Notification> claimBatch(Collection<ChannelType> channels, Priority lane, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> batch = notificationRepository.lockNextBatch(
+                lane.name(),
+                channels.stream().map(Enum::name).toList(),
+                now,
+                now.minusNanos(leaseTimeoutMs * 1_000_000),
+                limit);
+        
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        
+        Timer waitTimer = waitTimers.get(lane);
+        for (Notification n : batch) {
+            if (n.getStatus() == NotificationStatus.SENDING) {
+                // Reclaimed after a lost lease: updated_at is the previous claim, not readiness
+                reclaimed.increment();
+                continue;
+            }
+            // updated_at is when the row last became ready: creation or retry release
+            waitTimer.record(Duration.between(n.getUpdatedAt(), now));
+        }
+        
+        // Detached first: claim() sets status and updatedAt from the row it wrote
+        entityManager.clear();
+        notificationStatusRepository.claim(batch, now);
+        
+        log.debug("Claimed {} {} notifications for dispatch", batch.size(), lane);
+        return batch;
+    }
+    
+    /**
+     * Hands claimed notifications that were never attempted back to the queue. Rows whose claim
+     * was lost (lease expired, reclaimed by another worker) are left alone.
+     */
+    public void release(List<Notification> notifications) {
+        int released = notificationStatusRepository.release(notifications, LocalDateTime.now());
+        if (released < notifications.size()) {
+            log.warn("Skipped releasing {} notifications no longer claimed by this worker",
+                    notifications.size() - released);
+        }
+        signal();
+    }
+    
+    /**
+     * Lanes whose oldest ready notification has waited longer than {@code maxWaitMs}.
+     */
+    public Set<Priority> starvedLanes(long maxWaitMs) {
+        long now = System.currentTimeMillis();
+        Set<Priority> starved = EnumSet.noneOf(Priority.class);
+        oldestReadyAt.forEach((lane, readyAt) -> {
+            long at = readyAt.get();
+            if (at > 0 && now - at > maxWaitMs) {
+                starved.add(lane);
+            }
+        });
+        return starved;
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.dispatch.lane-stats-interval-ms:5000}")
+    public void refreshLaneStats() {
+        Map<Priority, Object[]> rows = new EnumMap<>(Priority.class);
+        notificationRepository.countReadyByPriority().forEach(row -> rows.put((Priority) row[0], row));
+        
+        for (Priority lane : Priority.values()) {
+            Object[] row = rows.get(lane);
+            depth.get(lane).set(row != null ? (Long) row[1] : 0);
+            oldestReadyAt.get(lane).set(row != null && row[2] != null
+                    ? ((LocalDateTime) row[2]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : 0);
+        }
+    }
+    
+    /**
+     * Signals idle workers once the current transaction commits, so freshly queued
+     * notifications don't wait for the next poll.
+     */
+    public void signalAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        } else {
+            signal();
+        }
+    }
+    
+    public void signal() {
+        synchronized (monitor) {
+            signalled = true;
+            monitor.notifyAll();
+        }
+    }
+    
+    /**
+     * Blocks until new work is signalled or the timeout elapses.
+     */
+    public void awaitWork(long timeoutMs) throws InterruptedException {
+        synchronized (monitor) {
+            if (!signalled) {
+                monitor.wait(timeoutMs);
+            }
+            signalled = false;
+        }
+    }
+}
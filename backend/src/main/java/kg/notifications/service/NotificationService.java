@@ -1,17 +1,32 @@
 package kg.notifications.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.JoinType;
 import kg.notifications.dto.*;
 import kg.notifications.entity.*;
+import kg.notifications.event.NotificationStatusEvent;
 import kg.notifications.repository.*;
+import kg.notifications.util.PageCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -21,58 +36,71 @@ import java.util.stream.Collectors;
 @Slf4j
 public class NotificationService {
     
+    private static final String ACCEPTED_MESSAGE = "Notification accepted for processing";
+    private static final String DUPLICATE_MESSAGE = "Duplicate request - returning existing notification";
+    private static final int MAX_PAGE_SIZE = 200;
+    
     private final NotificationRepository notificationRepository;
     private final ApiClientRepository apiClientRepository;
-    private final EmailService emailService;
+    private final NotificationQueueService notificationQueueService;
+    private final IdempotencyService idempotencyService;
     private final AuditService auditService;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsRollupService statsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ApproximateCountRepository approximateCountRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TemplateService templateService;
+    private final ChannelSenderRegistry channelSenderRegistry;
+    private final NotificationStatusRepository notificationStatusRepository;
+    private final ObjectMapper objectMapper;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
     
-    @Transactional
     public SendNotificationResponse sendNotification(SendNotificationRequest request, Integer clientId, String ipAddress) {
         log.info("Processing notification request: channel={}, recipient={}", 
                 request.getChannel(), maskRecipient(request.getRecipient()));
         
         // Check for idempotency
-        if (request.getIdempotencyKey() != null) {
-            Optional<Notification> existing = notificationRepository.findByIdempotencyKey(request.getIdempotencyKey());
+        String key = request.getIdempotencyKey();
+        if (key != null) {
+            Optional<Notification> existing = idempotencyService.findExisting(key);
             if (existing.isPresent()) {
-                log.info("Duplicate request detected with idempotency key: {}", request.getIdempotencyKey());
-                Notification n = existing.get();
-                return SendNotificationResponse.builder()
-                        .notificationId(n.getNotificationId())
-                        .status(n.getStatus())
-                        .createdAt(n.getCreatedAt())
-                        .message("Duplicate request - returning existing notification")
-                        .build();
+                log.info("Duplicate request detected with idempotency key: {}", key);
+                return toResponse(existing.get(), DUPLICATE_MESSAGE);
             }
         }
         
-        // Get API client
-        ApiClient client = apiClientRepository.findById(clientId)
-                .orElseThrow(() -> new IllegalArgumentException("Invalid client ID"));
+        return transactionTemplate.execute(status -> createNotification(request, clientId, ipAddress));
+    }
+    
+    private SendNotificationResponse createNotification(SendNotificationRequest request, Integer clientId, String ipAddress) {
+        // Client was resolved by the API key filter; last_used_at is flushed by ApiClientCache
+        ApiClient client = apiClientRepository.getReferenceById(clientId);
         
-        // Update last used
-        client.setLastUsedAt(LocalDateTime.now());
-        apiClientRepository.save(client);
+        // Create notification; flushed here so its id and created_at can be registered with the key
+        Notification notification = notificationRepository.saveAndFlush(buildNotification(request, client));
         
-        // Create notification
-        Notification notification = Notification.builder()
-                .client(client)
-                .channelType(request.getChannel())
-                .recipient(request.getRecipient())
-                .subject(request.getSubject())
-                .messageBody(request.getMessage())
-                .priority(request.getPriority() != null ? request.getPriority() : Priority.NORMAL)
-                .status(NotificationStatus.PENDING)
-                .retryCount(0)
-                .maxRetries(5)
-                .idempotencyKey(request.getIdempotencyKey())
-                .callbackUrl(request.getCallbackUrl())
-                .metadata(request.getMetadata())
-                .expiresAt(LocalDateTime.now().plusHours(24))
-                .build();
+        String key = request.getIdempotencyKey();
+        if (key != null) {
+            Map<String, Notification> owners = claimIdempotencyKeys(List.of(notification));
+            if (!owners.isEmpty()) {
+                // A concurrent request with the same key won; the key row is the final arbiter
+                notificationRepository.delete(notification);
+                Notification existing = owners.get(key);
+                idempotencyService.remember(key, existing.getNotificationId());
+                log.info("Duplicate request detected on insert with idempotency key: {}", key);
+                return toResponse(existing, DUPLICATE_MESSAGE);
+            }
+            idempotencyService.rememberAfterCommit(Map.of(key, notification.getNotificationId()));
+        }
         
-        notification = notificationRepository.save(notification);
         log.info("Notification created: {}", notification.getNotificationId());
+        eventPublisher.publishEvent(NotificationStatusEvent.of(notification, null));
         
         // Log to audit
         auditService.logNotificationSend(
@@ -82,29 +110,203 @@ public class NotificationService {
                 "PENDING",
                 ipAddress);
         
-        // Send asynchronously based on channel
-        final Notification savedNotification = notification;
-        if (request.getChannel() == ChannelType.EMAIL) {
-            emailService.sendEmail(savedNotification);
-        } else {
-            // For other channels, just mark as pending for now
-            log.info("Channel {} not yet implemented, notification {} waiting for processing", 
-                    request.getChannel(), notification.getNotificationId());
+        // Picked up from the dispatch queue by a worker once committed
+        notificationQueueService.signalAfterCommit();
+        
+        return toResponse(notification, ACCEPTED_MESSAGE);
+    }
+    
+    /**
+     * Accepts a burst of notifications in a single transaction: one idempotency lookup,
+     * JDBC-batched inserts and one audit entry for the whole batch. An item that cannot be
+     * built (unsupported channel, template error) is rejected in its own slot of the results.
+     */
+    public SendBatchResponse sendBatch(List<SendNotificationRequest> requests, Integer clientId, String ipAddress) {
+        log.info("Processing notification batch: size={}", requests.size());
+        return transactionTemplate.execute(status -> createBatch(requests, clientId, ipAddress));
+    }
+    
+    private SendBatchResponse createBatch(List<SendNotificationRequest> requests, Integer clientId, String ipAddress) {
+        // Deduplicate idempotency keys, querying only those that may already exist
+        Set<String> keys = requests.stream()
+                .map(SendNotificationRequest::getIdempotencyKey)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Notification> byKey = new HashMap<>();
+        if (!keys.isEmpty()) {
+            byKey.putAll(idempotencyService.findExisting(keys));
         }
         
-        return SendNotificationResponse.builder()
-                .notificationId(notification.getNotificationId())
-                .status(notification.getStatus())
-                .createdAt(notification.getCreatedAt())
-                .message("Notification accepted for processing")
+        ApiClient client = apiClientRepository.getReferenceById(clientId);
+        
+        List<BatchItem> items = new ArrayList<>(requests.size());
+        List<Notification> created = new ArrayList<>();
+        List<Notification> chunk = new ArrayList<>(batchSize);
+        List<Notification> keyed = new ArrayList<>();
+        
+        for (SendNotificationRequest request : requests) {
+            String key = request.getIdempotencyKey();
+            Notification existing = key != null ? byKey.get(key) : null;
+            if (existing != null) {
+                items.add(new BatchItem(existing, true, null));
+                continue;
+            }
+            
+            Notification notification;
+            try {
+                notification = buildNotification(request, client);
+            } catch (IllegalArgumentException e) {
+                items.add(new BatchItem(null, false, e.getMessage()));
+                continue;
+            }
+            if (key != null) {
+                // Later items with the same key within this batch resolve to this one
+                byKey.put(key, notification);
+                keyed.add(notification);
+            }
+            items.add(new BatchItem(notification, false, null));
+            created.add(notification);
+            chunk.add(notification);
+            
+            if (chunk.size() == batchSize) {
+                persistChunk(chunk);
+            }
+        }
+        persistChunk(chunk);
+        
+        // Keys another transaction registered first resolve to that transaction's notifications
+        Map<String, UUID> newKeys = new HashMap<>();
+        if (!keyed.isEmpty()) {
+            Map<String, Notification> owners = claimIdempotencyKeys(keyed);
+            if (!owners.isEmpty()) {
+                List<Notification> lost = keyed.stream()
+                        .filter(n -> owners.containsKey(n.getIdempotencyKey()))
+                        .toList();
+                notificationRepository.deleteAllByIdInBatch(lost.stream().map(Notification::getNotificationId).toList());
+                Set<Notification> lostSet = new HashSet<>(lost);
+                created.removeAll(lostSet);
+                items.replaceAll(item -> item.notification() != null && lostSet.contains(item.notification())
+                        ? new BatchItem(owners.get(item.notification().getIdempotencyKey()), true, null)
+                        : item);
+                log.info("Idempotency conflict in batch: {} keys resolved to existing notifications", owners.size());
+            }
+            // Ids are assigned on persist
+            keyed.forEach(n -> newKeys.put(n.getIdempotencyKey(), n.getNotificationId()));
+            owners.forEach((key, n) -> newKeys.put(key, n.getNotificationId()));
+        }
+        idempotencyService.rememberAfterCommit(newKeys);
+        created.forEach(n -> eventPublisher.publishEvent(NotificationStatusEvent.of(n, null)));
+        
+        int accepted = created.size();
+        int rejected = (int) items.stream().filter(item -> item.error() != null).count();
+        int duplicates = requests.size() - accepted - rejected;
+        
+        auditService.logAction(null, "SEND_NOTIFICATION_BATCH", "NOTIFICATION", null,
+                null, Map.of(
+                        "total", requests.size(),
+                        "accepted", accepted,
+                        "duplicates", duplicates,
+                        "rejected", rejected
+                ), ipAddress, null);
+        
+        notificationQueueService.signalAfterCommit();
+        log.info("Notification batch accepted: {} new, {} duplicates, {} rejected", accepted, duplicates, rejected);
+        
+        // Ids and timestamps are assigned on persist, so responses are built afterwards
+        List<SendNotificationResponse> results = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            if (item.error() != null) {
+                results.add(SendNotificationResponse.builder().error(item.error()).build());
+            } else {
+                results.add(toResponse(item.notification(), item.duplicate() ? DUPLICATE_MESSAGE : ACCEPTED_MESSAGE));
+            }
+        }
+        
+        return SendBatchResponse.builder()
+                .total(requests.size())
+                .accepted(accepted)
+                .duplicates(duplicates)
+                .rejected(rejected)
+                .results(results)
                 .build();
     }
     
+    private record BatchItem(Notification notification, boolean duplicate, String error) {
+    }
+    
+    /**
+     * Keys are unique across all partitions only through notification_idempotency_keys. A claim on a
+     * key held by another open transaction waits for it, so a taken key always has a committed owner.
+     *
+     * @return the existing notifications of the keys that were already taken, by key
+     */
+    private Map<String, Notification> claimIdempotencyKeys(List<Notification> notifications) {
+        Set<String> taken = idempotencyKeyRepository.claim(notifications);
+        if (taken.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, UUID> ownerIds = idempotencyKeyRepository.findOwners(taken);
+        Map<UUID, Notification> owners = notificationRepository.findAllById(ownerIds.values()).stream()
+                .collect(Collectors.toMap(Notification::getNotificationId, n -> n));
+        Map<String, Notification> byKey = new HashMap<>();
+        for (String key : taken) {
+            Notification owner = owners.get(ownerIds.get(key));
+            if (owner == null) {
+                // The owner's partition was dropped between the claim and the read
+                throw new DuplicateKeyException("Idempotency key already used: " + key);
+            }
+            byKey.put(key, owner);
+        }
+        return byKey;
+    }
+    
+    private void persistChunk(List<Notification> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        notificationRepository.saveAll(chunk);
+        // Send the chunk as one JDBC batch and keep the persistence context small
+        entityManager.flush();
+        entityManager.clear();
+        chunk.clear();
+    }
+    
     public Optional<NotificationDto> getNotificationStatus(UUID notificationId) {
         return notificationRepository.findById(notificationId)
                 .map(this::toDto);
     }
     
+    /**
+     * Writes the client's notification statuses as an ApiResponse whose data is an object keyed by
+     * what was asked for: the notificationId for {@code ids}, the key for {@code idempotencyKeys}.
+     * Unknown ones are left out. All are read by one query and written as the rows arrive.
+     */
+    public void writeStatuses(StatusBatchRequest request, Integer clientId, OutputStream out) throws IOException {
+        Set<UUID> ids = request.getIds() != null ? new HashSet<>(request.getIds()) : Set.of();
+        Set<String> keys = request.getIdempotencyKeys() != null ? new HashSet<>(request.getIdempotencyKeys()) : Set.of();
+        
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeBooleanField("success", true);
+            json.writeObjectFieldStart("data");
+            notificationStatusRepository.findStatuses(clientId, ids, keys, status -> {
+                try {
+                    if (ids.contains(status.getNotificationId())) {
+                        json.writeObjectField(status.getNotificationId().toString(), status);
+                    }
+                    if (status.getIdempotencyKey() != null && keys.contains(status.getIdempotencyKey())) {
+                        json.writeObjectField(status.getIdempotencyKey(), status);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndObject();
+            json.writeNumberField("timestamp", System.currentTimeMillis());
+            json.writeEndObject();
+        }
+    }
+    
     @Transactional(readOnly = true)
     public Page<NotificationDto> getNotifications(Pageable pageable) {
         return notificationRepository.findAllWithClient(
@@ -125,11 +327,54 @@ public class NotificationService {
         return notificationRepository.findByChannelTypeWithClient(channelType, pageable).map(this::toDto);
     }
     
+    /**
+     * Keyset page of notifications, newest first, optionally filtered by status and channel.
+     * Served by the (filter, created_at, notification_id) indexes regardless of depth.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<NotificationDto> getNotificationsPage(NotificationStatus status, ChannelType channel,
+                                                            String cursorToken, int size, boolean includeTotal) {
+        PageCursor cursor = PageCursor.decode(cursorToken);
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        
+        Specification<Notification> spec = Specification.allOf(
+                (root, query, cb) -> {
+                    root.fetch("client", JoinType.LEFT);
+                    return null;
+                },
+                KeysetQueries.equal("status", status),
+                KeysetQueries.equal("channelType", channel),
+                KeysetQueries.after(cursor, "createdAt", "notificationId", UUID::fromString));
+        List<Notification> rows = notificationRepository.findBy(spec, q -> q
+                .sortBy(KeysetQueries.order(cursor, "createdAt", "notificationId"))
+                .limit(limit + 1)
+                .all());
+        
+        CursorPage<NotificationDto> page = KeysetQueries.page(rows, limit, cursor,
+                Notification::getCreatedAt, Notification::getNotificationId, this::toDto);
+        if (includeTotal) {
+            List<String> where = new ArrayList<>();
+            List<Object> args = new ArrayList<>();
+            if (status != null) {
+                where.add("status = ?");
+                args.add(status.name());
+            }
+            if (channel != null) {
+                where.add("channel_type = ?");
+                args.add(channel.name());
+            }
+            page.setApproximateTotal(approximateCountRepository.estimate("notifications",
+                    where.isEmpty() ? null : String.join(" AND ", where), args.toArray()));
+        }
+        return page;
+    }
+    
     @Transactional
     public Optional<NotificationDto> retryNotification(UUID notificationId) {
         return notificationRepository.findById(notificationId)
                 .filter(n -> n.getStatus() == NotificationStatus.FAILED || n.getStatus() == NotificationStatus.EXPIRED)
                 .map(notification -> {
+                    NotificationStatus oldStatus = notification.getStatus();
                     notification.setStatus(NotificationStatus.PENDING);
                     notification.setRetryCount(0);
                     notification.setNextRetryAt(null);
@@ -138,57 +383,65 @@ public class NotificationService {
                     notification.setExpiresAt(LocalDateTime.now().plusHours(24));
                     
                     notification = notificationRepository.save(notification);
+                    eventPublisher.publishEvent(NotificationStatusEvent.of(notification, oldStatus));
                     
-                    // Trigger send
-                    if (notification.getChannelType() == ChannelType.EMAIL) {
-                        emailService.sendEmail(notification);
-                    }
+                    notificationQueueService.signalAfterCommit();
                     
                     auditService.logNotificationStatusChange(
-                            notificationId.toString(), "FAILED", "PENDING", "Manual retry triggered");
+                            notificationId.toString(), oldStatus.name(), "PENDING", "Manual retry triggered");
                     
                     return toDto(notification);
                 });
     }
     
+    /**
+     * Dashboard figures for the last 24 hours, read from notification_stats_hourly
+     * rather than aggregated over notifications on every request.
+     */
     public DashboardStatsDto getDashboardStats() {
         LocalDateTime since = LocalDateTime.now().minusHours(24);
+        List<StatsRollupService.HourlyRollup> rollups = statsRollupService.findSince(since);
         
-        Long totalSent = notificationRepository.countByStatusSince(NotificationStatus.SENT, since);
-        Long totalFailed = notificationRepository.countByStatusSince(NotificationStatus.FAILED, since);
-        Long totalPending = notificationRepository.countByStatusSince(NotificationStatus.PENDING, since);
-        Long total = totalSent + totalFailed + totalPending;
-        
-        Double successRate = total > 0 ? (totalSent.doubleValue() / total) * 100 : 0.0;
+        long totalSent = 0;
+        long totalFailed = 0;
+        long totalPending = 0;
+        long totalExpired = 0;
+        long deliveryTimeSumMs = 0;
+        Map<String, Long> byChannel = new LinkedHashMap<>();
+        Map<LocalDateTime, Long> byHour = new TreeMap<>();
+        for (StatsRollupService.HourlyRollup rollup : rollups) {
+            totalSent += rollup.sent();
+            totalFailed += rollup.failed();
+            totalPending += rollup.pending();
+            totalExpired += rollup.expired();
+            deliveryTimeSumMs += rollup.deliveryTimeSumMs();
+            byChannel.merge(rollup.channel().name(), rollup.created(), Long::sum);
+            byHour.merge(rollup.hour(), rollup.created(), Long::sum);
+        }
+        long total = totalSent + totalFailed + totalPending;
         
-        // By channel
-        Map<String, Long> byChannel = notificationRepository.countByChannelSince(since)
-                .stream()
-                .collect(Collectors.toMap(
-                        arr -> ((ChannelType) arr[0]).name(),
-                        arr -> (Long) arr[1]
-                ));
+        Double successRate = total > 0 ? ((double) totalSent / total) * 100 : 0.0;
         
         // By status
-        Map<String, Long> byStatus = notificationRepository.countByStatusGrouped(since)
-                .stream()
-                .collect(Collectors.toMap(
-                        arr -> ((NotificationStatus) arr[0]).name(),
-                        arr -> (Long) arr[1]
-                ));
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        byStatus.put(NotificationStatus.PENDING.name(), totalPending);
+        byStatus.put(NotificationStatus.SENT.name(), totalSent);
+        byStatus.put(NotificationStatus.FAILED.name(), totalFailed);
+        byStatus.put(NotificationStatus.EXPIRED.name(), totalExpired);
+        byStatus.values().removeIf(count -> count == 0);
         
         // Hourly stats
-        List<DashboardStatsDto.HourlyStatDto> hourlyStats = notificationRepository.countByHourSince(since)
+        List<DashboardStatsDto.HourlyStatDto> hourlyStats = byHour.entrySet()
                 .stream()
-                .map(arr -> DashboardStatsDto.HourlyStatDto.builder()
-                        .hour((LocalDateTime) arr[0])
-                        .count((Long) arr[1])
+                .map(e -> DashboardStatsDto.HourlyStatDto.builder()
+                        .hour(e.getKey())
+                        .count(e.getValue())
                         .build())
                 .collect(Collectors.toList());
         
         // Recent errors
         List<NotificationDto> recentErrors = notificationRepository
-                .findTop10ByStatusOrderByCreatedAtDesc(NotificationStatus.FAILED)
+                .findTop10ByStatusAndCreatedAtAfterOrderByCreatedAtDesc(NotificationStatus.FAILED, since)
                 .stream()
                 .map(this::toDto)
                 .collect(Collectors.toList());
@@ -198,6 +451,7 @@ public class NotificationService {
                 .totalFailed(totalFailed)
                 .totalPending(totalPending)
                 .successRate(Math.round(successRate * 100.0) / 100.0)
+                .avgDeliveryTimeMs(totalSent > 0 ? deliveryTimeSumMs / totalSent : null)
                 .byChannel(byChannel)
                 .byStatus(byStatus)
                 .hourlyStats(hourlyStats)
@@ -206,6 +460,47 @@ public class NotificationService {
                 .build();
     }
     
+    private Notification buildNotification(SendNotificationRequest request, ApiClient client) {
+        if (!channelSenderRegistry.isSupported(request.getChannel())) {
+            throw new IllegalArgumentException("Канал " + request.getChannel() + " не поддерживается");
+        }
+        
+        String subject = request.getSubject();
+        String body = request.getMessage();
+        if (request.getTemplateCode() != null) {
+            TemplateService.Rendered rendered = templateService.render(
+                    request.getTemplateCode(), request.getChannel(), request.getVariables());
+            // An explicit subject overrides the template's
+            subject = subject != null ? subject : rendered.subject();
+            body = rendered.body();
+        }
+        
+        return Notification.builder()
+                .client(client)
+                .channelType(request.getChannel())
+                .recipient(request.getRecipient())
+                .subject(subject)
+                .messageBody(body)
+                .priority(request.getPriority() != null ? request.getPriority() : Priority.NORMAL)
+                .status(NotificationStatus.PENDING)
+                .retryCount(0)
+                .maxRetries(5)
+                .idempotencyKey(request.getIdempotencyKey())
+                .callbackUrl(request.getCallbackUrl())
+                .metadata(request.getMetadata())
+                .expiresAt(LocalDateTime.now().plusHours(24))
+                .build();
+    }
+    
+    private SendNotificationResponse toResponse(Notification n, String message) {
+        return SendNotificationResponse.builder()
+                .notificationId(n.getNotificationId())
+                .status(n.getStatus())
+                .createdAt(n.getCreatedAt())
+                .message(message)
+                .build();
+    }
+    
     private NotificationDto toDto(Notification n) {
         return NotificationDto.builder()
                 .notificationId(n.getNotificationId())
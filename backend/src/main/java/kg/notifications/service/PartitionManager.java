@@ -0,0 +1,199 @@
+package kg.notifications.service;
+
+import jakarta.annotation.PostConstruct;
+import kg.notifications.repository.IdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the range partitions of notifications.
+ * <p>
+ * Partitions of one {@code interval} (DAY or MONTH) are created {@code premake} periods ahead, so
+ * inserts never hit a missing range. With {@code retention-periods} above zero, partitions that ended
+ * more than that many periods before the current one are detached (kept as standalone tables for
+ * archiving) or dropped, together with their idempotency keys. There is deliberately no default
+ * partition: it would block both creating overlapping ranges and DETACH CONCURRENTLY.
+ * Replicas coordinate through a session advisory lock, so only one of them runs at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionManager {
+    
+    private static final String PARENT_TABLE = "notifications";
+    private static final long ADVISORY_LOCK_KEY = 0x6E6F7469_66790001L;
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    
+    @Value("${notification.partitions.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${notification.partitions.interval:MONTH}")
+    private Interval interval;
+    
+    @Value("${notification.partitions.premake:3}")
+    private int premake;
+    
+    /**
+     * Whole periods kept before the current one; 0 keeps everything.
+     */
+    @Value("${notification.partitions.retention-periods:0}")
+    private int retentionPeriods;
+    
+    /**
+     * DETACH leaves expired partitions as standalone tables, DROP deletes them.
+     */
+    @Value("${notification.partitions.retention-action:DETACH}")
+    private String retentionAction;
+    
+    public enum Interval {
+        DAY(DateTimeFormatter.ofPattern("yyyy_MM_dd")),
+        MONTH(DateTimeFormatter.ofPattern("yyyy_MM"));
+        
+        private final DateTimeFormatter suffix;
+        
+        Interval(DateTimeFormatter suffix) {
+            this.suffix = suffix;
+        }
+        
+        LocalDate start(LocalDate date) {
+            return this == DAY ? date : date.withDayOfMonth(1);
+        }
+        
+        LocalDate plus(LocalDate start, long periods) {
+            return this == DAY ? start.plusDays(periods) : start.plusMonths(periods);
+        }
+    }
+    
+    /**
+     * Runs during context startup, before the web server accepts requests.
+     */
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.partitions.check-interval-ms:3600000}",
+            initialDelayString = "${notification.partitions.check-interval-ms:3600000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                if (!advisoryLock(con, "pg_try_advisory_lock")) {
+                    log.debug("Partition maintenance running elsewhere, skipping");
+                    return null;
+                }
+                try {
+                    createAhead(con);
+                    retireExpired(con);
+                } finally {
+                    advisoryLock(con, "pg_advisory_unlock");
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+    
+    private void createAhead(Connection con) throws SQLException {
+        LocalDate current = interval.start(LocalDate.now());
+        for (int i = 0; i <= premake; i++) {
+            LocalDate from = interval.plus(current, i);
+            LocalDate to = interval.plus(from, 1);
+            String name = PARENT_TABLE + "_p" + from.format(interval.suffix);
+            try (Statement st = con.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT_TABLE +
+                        " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            } catch (SQLException e) {
+                // Typically an existing partition with another interval already covers the range
+                log.warn("Could not create partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Detaches or drops expired partitions. A DETACH CONCURRENTLY that failed after its first
+     * transaction leaves the partition detach-pending; such partitions are finalized here, first,
+     * since no other partition can be detached while one is pending.
+     */
+    private void retireExpired(Connection con) throws SQLException {
+        LocalDateTime cutoff = interval.plus(interval.start(LocalDate.now()), -retentionPeriods).atStartOfDay();
+        boolean drop = "DROP".equalsIgnoreCase(retentionAction);
+        
+        List<Partition> partitions = listPartitions(con);
+        partitions.sort(Comparator.comparing(Partition::detachPending).reversed());
+        for (Partition partition : partitions) {
+            boolean expired = retentionPeriods > 0 && partition.upperBound() != null
+                    && !partition.upperBound().isAfter(cutoff);
+            if (!expired && !partition.detachPending()) {
+                continue;
+            }
+            try (Statement st = con.createStatement()) {
+                st.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition.name() +
+                        (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+                if (!expired) {
+                    log.info("Finalized pending detach of partition {}", partition.name());
+                    continue;
+                }
+                if (drop) {
+                    st.execute("DROP TABLE " + partition.name());
+                }
+            } catch (SQLException e) {
+                log.error("Could not retire partition {}: {}", partition.name(), e.getMessage());
+                continue;
+            }
+            int keys = idempotencyKeyRepository.deleteCreatedBefore(partition.upperBound());
+            log.info("{} partition {} (before {}), removed {} idempotency keys",
+                    drop ? "Dropped" : "Detached", partition.name(), partition.upperBound(), keys);
+        }
+    }
+    
+    private List<Partition> listPartitions(Connection con) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), i.inhdetachpending FROM pg_inherits i " +
+                     "JOIN pg_class c ON c.oid = i.inhrelid " +
+                     "WHERE i.inhparent = '" + PARENT_TABLE + "'::regclass")) {
+            while (rs.next()) {
+                Matcher m = UPPER_BOUND.matcher(rs.getString(2));
+                LocalDateTime upper = m.find() ? LocalDateTime.parse(m.group(1).replace(' ', 'T')) : null;
+                partitions.add(new Partition(rs.getString(1), upper, rs.getBoolean(3)));
+            }
+        }
+        return partitions;
+    }
+    
+    private boolean advisoryLock(Connection con, String function) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + function + "(" + ADVISORY_LOCK_KEY + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+    
+    private record Partition(String name, LocalDateTime upperBound, boolean detachPending) {
+    }
+}
@@ -0,0 +1,143 @@
+package kg.notifications.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import kg.notifications.entity.ChannelConfig.HealthStatus;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.util.CircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breakers per (channel, provider), fed by the senders with the outcome and latency of
+ * every provider call.
+ * <p>
+ * Breakers are sized from {@code notification.channels.<channel>.breaker.*}, falling back to
+ * {@code notification.channels.defaults.breaker.*}. Their state is written to
+ * {@code channel_configs.health_status} and {@code last_health_check} once per persist interval,
+ * and the same pass re-reads provider priorities, which {@link ChannelSenderRegistry} routes by.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderHealthService {
+    
+    private static final String PREFIX = "notification.channels.";
+    private static final int UNCONFIGURED_PRIORITY = Integer.MAX_VALUE;
+    
+    private final Environment environment;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<ProviderKey, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Set<ProviderKey> tripped = ConcurrentHashMap.newKeySet();
+    private volatile Map<ProviderKey, Integer> priorities = Map.of();
+    
+    private record ProviderKey(ChannelType channel, String provider) {
+    }
+    
+    public CircuitBreaker breaker(ChannelType channel, String provider) {
+        return breakers.computeIfAbsent(new ProviderKey(channel, provider), this::create);
+    }
+    
+    public boolean isCallPermitted(ChannelType channel, String provider) {
+        return breaker(channel, provider).isCallPermitted(System.nanoTime());
+    }
+    
+    /**
+     * channel_configs.priority of the provider, lower first; providers without a row go last.
+     */
+    public int priority(ChannelType channel, String provider) {
+        return priorities.getOrDefault(new ProviderKey(channel, provider), UNCONFIGURED_PRIORITY);
+    }
+    
+    public HealthStatus healthStatus(ChannelType channel, String provider) {
+        ProviderKey key = new ProviderKey(channel, provider);
+        CircuitBreaker breaker = breaker(channel, provider);
+        return switch (breaker.state()) {
+            case OPEN -> HealthStatus.UNHEALTHY;
+            case HALF_OPEN -> HealthStatus.DEGRADED;
+            case CLOSED -> {
+                if (breaker.calls() == 0) {
+                    // Either never called, or just closed again after successful probes
+                    yield tripped.contains(key) ? HealthStatus.HEALTHY : HealthStatus.UNKNOWN;
+                }
+                // Failing or slow, but not enough to trip yet
+                yield breaker.failureRate() * 2 >= setting(channel, "failure-rate-threshold", 50)
+                        || breaker.slowCallRate() * 2 >= setting(channel, "slow-call-rate-threshold", 80)
+                        ? HealthStatus.DEGRADED : HealthStatus.HEALTHY;
+            }
+        };
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.health.persist-interval-ms:10000}")
+    public void persist() {
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            breakers.forEach((key, breaker) -> {
+                HealthStatus status = healthStatus(key.channel(), key.provider());
+                if (status != HealthStatus.UNKNOWN) {
+                    rows.add(new Object[]{status.name(), now, key.channel().name(), key.provider()});
+                }
+            });
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE channel_configs SET health_status = ?, last_health_check = ? " +
+                        "WHERE channel_name = ? AND provider_name = ?", rows);
+            }
+            
+            Map<ProviderKey, Integer> loaded = new ConcurrentHashMap<>();
+            jdbcTemplate.query("SELECT channel_name, provider_name, priority FROM channel_configs", rs -> {
+                loaded.put(new ProviderKey(ChannelType.valueOf(rs.getString(1)), rs.getString(2)), rs.getInt(3));
+            });
+            priorities = loaded;
+        } catch (Exception e) {
+            log.warn("Could not sync provider health with channel_configs: {}", e.getMessage());
+        }
+    }
+    
+    private CircuitBreaker create(ProviderKey key) {
+        String label = key.channel() + "/" + key.provider();
+        CircuitBreaker breaker = new CircuitBreaker(
+                setting(key.channel(), "window-size", 20),
+                setting(key.channel(), "minimum-calls", 10),
+                setting(key.channel(), "failure-rate-threshold", 50),
+                setting(key.channel(), "slow-call-rate-threshold", 80),
+                TimeUnit.MILLISECONDS.toNanos(setting(key.channel(), "slow-call-ms", 2000)),
+                TimeUnit.MILLISECONDS.toNanos(setting(key.channel(), "open-ms", 30000)),
+                setting(key.channel(), "probes", 3),
+                (from, to) -> {
+                    tripped.add(key);
+                    if (to == CircuitBreaker.State.OPEN) {
+                        log.warn("Circuit for {} opened (was {}), calls fail fast", label, from);
+                    } else {
+                        log.info("Circuit for {} is {} (was {})", label, to, from);
+                    }
+                });
+        Gauge.builder("notification.provider.circuit", breaker, b -> b.state().ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .tag("channel", key.channel().name())
+                .tag("provider", key.provider())
+                .register(meterRegistry);
+        return breaker;
+    }
+    
+    private int setting(ChannelType channel, String key, int fallback) {
+        Integer defaults = environment.getProperty(PREFIX + "defaults.breaker." + key, Integer.class, fallback);
+        return environment.getProperty(PREFIX + channel.name().toLowerCase() + ".breaker." + key, Integer.class, defaults);
+    }
+}
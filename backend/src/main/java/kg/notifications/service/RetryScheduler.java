@@ -0,0 +1,178 @@
+package kg.notifications.service;
+
+import jakarta.annotation.PostConstruct;
+import kg.notifications.config.SchedulingConfig;
+import kg.notifications.repository.NotificationRepository;
+import kg.notifications.util.HashedTimingWheel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Fires scheduled retries from an in-memory hashed timing wheel.
+ * <p>
+ * The wheel is filled incrementally from idx_notifications_next_retry, one load horizon ahead,
+ * so each tick only touches due timers instead of scanning the table. A due retry is fired by
+ * clearing its next_retry_at, which makes it visible to the dispatch queue.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RetryScheduler {
+    
+    private static final LocalDateTime LOAD_ORIGIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    
+    private final NotificationRepository notificationRepository;
+    private final NotificationQueueService queueService;
+    
+    @Value("${notification.retry.tick-ms:1000}")
+    private long tickMs;
+    
+    @Value("${notification.retry.wheel-size:1024}")
+    private int wheelSize;
+    
+    @Value("${notification.retry.load-horizon-ms:300000}")
+    private long loadHorizonMs;
+    
+    @Value("${notification.retry.load-batch-size:1000}")
+    private int loadBatchSize;
+    
+    @Value("${notification.retry.fire-batch-size:500}")
+    private int fireBatchSize;
+    
+    private final Object lock = new Object();
+    private final Set<UUID> scheduled = new HashSet<>();
+    private final ArrayDeque<UUID> due = new ArrayDeque<>();
+    private HashedTimingWheel<UUID> wheel;
+    private LocalDateTime loadedUntil = LOAD_ORIGIN;
+    
+    @PostConstruct
+    public void init() {
+        wheel = new HashedTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+        if (loadHorizonMs > wheel.spanMillis()) {
+            log.warn("Retry load horizon {}ms exceeds wheel span {}ms; far timers will carry rounds",
+                    loadHorizonMs, wheel.spanMillis());
+        }
+    }
+    
+    /**
+     * Schedules a retry produced on this instance. Timers loaded from the database later are deduplicated.
+     */
+    public void schedule(UUID notificationId, LocalDateTime nextRetryAt) {
+        synchronized (lock) {
+            add(notificationId, nextRetryAt);
+        }
+    }
+    
+    @Scheduled(fixedRateString = "${notification.retry.tick-ms:1000}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void tick() {
+        synchronized (lock) {
+            wheel.advance(System.currentTimeMillis(), id -> {
+                scheduled.remove(id);
+                due.add(id);
+            });
+        }
+        
+        int released = 0;
+        List<UUID> batch;
+        while (!(batch = pollDue()).isEmpty()) {
+            try {
+                released += notificationRepository.releaseDueRetries(batch, LocalDateTime.now());
+            } catch (Exception e) {
+                // Dropped timers are still in the table and come back with the next overdue load
+                log.error("Failed to release {} due retries: {}", batch.size(), e.getMessage());
+            }
+        }
+        
+        if (released > 0) {
+            log.debug("Released {} due retries", released);
+            queueService.signal();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.retry.load-interval-ms:10000}")
+    public void load() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime to = now.plusNanos(loadHorizonMs * 1_000_000);
+        LocalDateTime from;
+        synchronized (lock) {
+            from = loadedUntil;
+        }
+        
+        int loaded = loadRange(from, to);
+        if (from != LOAD_ORIGIN) {
+            // Overdue timers this instance never saw: scheduled by other replicas or failed releases
+            loaded += loadRange(LOAD_ORIGIN, now);
+        }
+        
+        synchronized (lock) {
+            loadedUntil = to;
+        }
+        if (loaded > 0) {
+            log.debug("Loaded {} retry timers up to {}, wheel size {}", loaded, to, pendingTimers());
+        }
+    }
+    
+    public int pendingTimers() {
+        synchronized (lock) {
+            return wheel.size() + due.size();
+        }
+    }
+    
+    private int loadRange(LocalDateTime from, LocalDateTime to) {
+        int loaded = 0;
+        LocalDateTime cursorAt = from;
+        UUID cursorId = MIN_UUID;
+        while (true) {
+            List<Object[]> page = notificationRepository.findRetryTimers(
+                    cursorAt, cursorId, to, PageRequest.of(0, loadBatchSize));
+            synchronized (lock) {
+                for (Object[] row : page) {
+                    if (add((UUID) row[0], (LocalDateTime) row[1])) {
+                        loaded++;
+                    }
+                }
+            }
+            if (page.size() < loadBatchSize) {
+                return loaded;
+            }
+            Object[] last = page.get(page.size() - 1);
+            cursorId = (UUID) last[0];
+            cursorAt = (LocalDateTime) last[1];
+        }
+    }
+    
+    private boolean add(UUID notificationId, LocalDateTime nextRetryAt) {
+        if (!scheduled.add(notificationId)) {
+            return false;
+        }
+        // Sub-millisecond part rounded up too: releaseDueRetries only matches next_retry_at <= now
+        long deadline = nextRetryAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                + (nextRetryAt.getNano() % 1_000_000 > 0 ? 1 : 0);
+        wheel.schedule(notificationId, deadline);
+        return true;
+    }
+    
+    private List<UUID> pollDue() {
+        synchronized (lock) {
+            List<UUID> batch = new ArrayList<>(Math.min(due.size(), fireBatchSize));
+            while (batch.size() < fireBatchSize && !due.isEmpty()) {
+                batch.add(due.poll());
+            }
+            return batch;
+        }
+    }
+}
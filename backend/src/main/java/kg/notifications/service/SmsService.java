@@ -0,0 +1,341 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.util.CircuitBreaker;
+import kg.notifications.util.WeightedFairScheduler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers SMS through HTTP gateways that take many numbers per request.
+ * <p>
+ * Notifications handed in by concurrent bulkhead threads are gathered into one submission: the
+ * thread that opens a batch waits up to {@code linger-ms} (or until {@code max-batch-size} is reached),
+ * posts it and records the per-number results with one bulk update for the accepted rows and one for
+ * the rejected ones, while the other contributors just wait for the outcome. Each submission goes to
+ * an endpoint picked by smooth weighted round-robin and fails over to the others when the connection
+ * cannot be made, or on 5xx or 429. A timeout after the request went out, or a 2xx that cannot be read,
+ * leaves it unknown whether the gateway took the batch: it is not resent elsewhere but scheduled for a
+ * retry after the usual backoff. Only a submission that no endpoint accepted counts against the
+ * provider's circuit breaker; while it is open, batches are deferred without a request.
+ * <p>
+ * Gateway protocol: {@code POST {"sender", "messages": [{"id", "to", "text"}]}} answered with
+ * {@code {"results": [{"id", "status": "ACCEPTED"|"REJECTED", "messageId", "error"}]}}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SmsService implements ChannelSender {
+    
+    public static final String PROVIDER = "SMS Gateway";
+    
+    private final DeliveryStatusService deliveryStatusService;
+    private final ProviderHealthService providerHealth;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    
+    @Value("${notification.sms.sender-id:Notify}")
+    private String senderId;
+    
+    @Value("${notification.sms.linger-ms:50}")
+    private long lingerMs;
+    
+    @Value("${notification.sms.max-batch-size:500}")
+    private int maxBatchSize;
+    
+    @Value("${notification.sms.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+    
+    @Value("${notification.sms.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+    
+    private List<Endpoint> endpoints;
+    private WeightedFairScheduler<Endpoint> endpointScheduler;
+    private HttpClient httpClient;
+    
+    private final Object lock = new Object();
+    private Batch open;
+    
+    /**
+     * One configured gateway; {@code weight} is its share of submissions.
+     */
+    public record Endpoint(String url, String token, Integer weight) {
+    }
+    
+    private static final class Batch {
+        final List<Notification> items = new ArrayList<>();
+        final CompletableFuture<Set<UUID>> sent = new CompletableFuture<>();
+        final long deadline;
+        boolean closed;
+        
+        Batch(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+    
+    /**
+     * Final answer of the gateways; {@code status} 0 when none could be reached, -1 when the outcome is unknown.
+     */
+    private record Submission(int status, JsonNode body, String error) {
+        
+        static Submission unknown(String error) {
+            return new Submission(-1, null, error);
+        }
+        
+        boolean isUnknown() {
+            return status < 0;
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        endpoints = Binder.get(environment)
+                .bind("notification.sms.endpoints", Bindable.listOf(Endpoint.class))
+                .orElse(List.of())
+                .stream()
+                .filter(e -> e.url() != null && !e.url().isBlank())
+                .toList();
+        Map<Endpoint, Integer> weights = new LinkedHashMap<>();
+        endpoints.forEach(e -> weights.put(e, e.weight() != null ? e.weight() : 1));
+        endpointScheduler = new WeightedFairScheduler<>(weights);
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+    
+    @Override
+    public ChannelType channel() {
+        return ChannelType.SMS;
+    }
+    
+    @Override
+    public String provider() {
+        return PROVIDER;
+    }
+    
+    @Override
+    public boolean isAvailable() {
+        return !endpoints.isEmpty();
+    }
+    
+    @Override
+    public int sendBatch(List<Notification> notifications) {
+        List<Batch> joined = new ArrayList<>();
+        List<Batch> leading = new ArrayList<>();
+        synchronized (lock) {
+            for (Notification notification : notifications) {
+                if (open == null) {
+                    open = new Batch(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs));
+                    leading.add(open);
+                }
+                if (joined.isEmpty() || joined.get(joined.size() - 1) != open) {
+                    joined.add(open);
+                }
+                open.items.add(notification);
+                if (open.items.size() >= maxBatchSize) {
+                    close(open);
+                }
+            }
+        }
+        
+        for (Batch batch : leading) {
+            awaitClose(batch);
+            submit(batch);
+        }
+        
+        Set<UUID> mine = new HashSet<>();
+        notifications.forEach(n -> mine.add(n.getNotificationId()));
+        int sent = 0;
+        for (Batch batch : joined) {
+            for (UUID id : batch.sent.join()) {
+                if (mine.contains(id)) {
+                    sent++;
+                }
+            }
+        }
+        return sent;
+    }
+    
+    private void awaitClose(Batch batch) {
+        synchronized (lock) {
+            long remaining;
+            while (!batch.closed && (remaining = batch.deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            close(batch);
+        }
+    }
+    
+    private void close(Batch batch) {
+        batch.closed = true;
+        if (open == batch) {
+            open = null;
+        }
+        lock.notifyAll();
+    }
+    
+    private void submit(Batch batch) {
+        Set<UUID> sentIds = new HashSet<>();
+        CircuitBreaker circuit = providerHealth.breaker(ChannelType.SMS, PROVIDER);
+        try {
+            if (!circuit.tryAcquire(System.nanoTime())) {
+                LocalDateTime now = LocalDateTime.now();
+                batch.items.forEach(n -> deliveryStatusService.defer(n, now));
+                return;
+            }
+            Map<UUID, Notification> byId = new HashMap<>();
+            batch.items.forEach(n -> byId.put(n.getNotificationId(), n));
+            
+            long startedAt = System.nanoTime();
+            Submission submission;
+            try {
+                submission = post(batch.items);
+            } catch (Exception e) {
+                circuit.onFailure(System.nanoTime() - startedAt, System.nanoTime());
+                throw e;
+            }
+            if (submission.status() <= 0 || submission.status() >= 500 || submission.status() == 429) {
+                circuit.onFailure(System.nanoTime() - startedAt, System.nanoTime());
+            } else {
+                circuit.onSuccess(System.nanoTime() - startedAt, System.nanoTime());
+            }
+            List<Notification> sent = new ArrayList<>();
+            List<DeliveryStatusService.Failure> failures = new ArrayList<>();
+            
+            if (submission.isUnknown()) {
+                // The gateway may have the batch already; resending right away could deliver twice
+                log.warn("SMS batch of {} has an unknown outcome: {}", batch.items.size(), submission.error());
+                byId.values().forEach(n -> failures.add(new DeliveryStatusService.Failure(n,
+                        "Outcome unknown: " + submission.error(), "PROVIDER_ERROR")));
+            } else if (submission.status() >= 200 && submission.status() < 300) {
+                for (JsonNode result : submission.body().path("results")) {
+                    Notification notification = byId.remove(parseId(result.path("id").asText()));
+                    if (notification == null) {
+                        continue;
+                    }
+                    if ("ACCEPTED".equalsIgnoreCase(result.path("status").asText())) {
+                        notification.setProviderMessageId(result.path("messageId").asText(null));
+                        sent.add(notification);
+                    } else {
+                        failures.add(new DeliveryStatusService.Failure(notification,
+                                result.path("error").asText("Rejected by gateway"), "REJECTED"));
+                    }
+                }
+                byId.values().forEach(n -> failures.add(
+                        new DeliveryStatusService.Failure(n, "No result from gateway", "PROVIDER_ERROR")));
+            } else {
+                String error = submission.status() == 0 ? submission.error()
+                        : submission.body().path("error").asText("HTTP " + submission.status());
+                String code = submission.status() >= 400 && submission.status() < 500 && submission.status() != 429
+                        ? "REJECTED" : "PROVIDER_ERROR";
+                byId.values().forEach(n -> failures.add(new DeliveryStatusService.Failure(n, error, code)));
+            }
+            
+            deliveryStatusService.markSent(sent);
+            deliveryStatusService.markFailed(failures);
+            sent.forEach(n -> sentIds.add(n.getNotificationId()));
+            log.debug("SMS batch of {}: {} accepted, {} failed", batch.items.size(), sent.size(), failures.size());
+        } catch (Exception e) {
+            // Rows stay SENDING and are reclaimed after the lease timeout
+            log.error("SMS batch of {} failed: {}", batch.items.size(), e.getMessage(), e);
+        } finally {
+            batch.sent.complete(sentIds);
+        }
+    }
+    
+    /**
+     * Tries endpoints in weighted order until one answers with a final status. Moves on only when
+     * the previous endpoint certainly did not take the batch.
+     */
+    private Submission post(List<Notification> items) throws Exception {
+        List<Map<String, Object>> messages = new ArrayList<>(items.size());
+        for (Notification n : items) {
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("id", n.getNotificationId().toString());
+            message.put("to", n.getRecipient());
+            message.put("text", n.getMessageBody());
+            messages.add(message);
+        }
+        byte[] payload = objectMapper.writeValueAsBytes(Map.of("sender", senderId, "messages", messages));
+        
+        Submission last = new Submission(0, null, "All SMS gateways failed");
+        for (Endpoint endpoint : endpointScheduler.nextOrder(Set.of())) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(endpoint.url()))
+                    .timeout(Duration.ofMillis(requestTimeoutMs))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+            if (endpoint.token() != null && !endpoint.token().isBlank()) {
+                request.header("Authorization", "Bearer " + endpoint.token());
+            }
+            HttpResponse<byte[]> response;
+            try {
+                response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            } catch (ConnectException | HttpConnectTimeoutException e) {
+                log.warn("SMS gateway {} unreachable: {}, trying next", endpoint.url(), e.toString());
+                continue;
+            } catch (IOException e) {
+                // Timed out or dropped after the request was sent
+                return Submission.unknown(endpoint.url() + ": " + e);
+            }
+            
+            int status = response.statusCode();
+            JsonNode body;
+            try {
+                body = response.body().length > 0 ? objectMapper.readTree(response.body()) : objectMapper.missingNode();
+            } catch (IOException e) {
+                if (status >= 200 && status < 300) {
+                    return Submission.unknown(endpoint.url() + " answered " + status + " with an unreadable body");
+                }
+                body = objectMapper.missingNode();
+            }
+            last = new Submission(status, body, null);
+            if (status < 500 && status != 429) {
+                return last;
+            }
+            log.warn("SMS gateway {} answered {}, trying next", endpoint.url(), status);
+        }
+        return last;
+    }
+    
+    private static UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
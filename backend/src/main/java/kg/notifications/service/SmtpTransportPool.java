@@ -0,0 +1,196 @@
+package kg.notifications.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of long-lived, authenticated SMTP transports.
+ * <p>
+ * {@link JavaMailSender#send} opens a connection, negotiates STARTTLS and authenticates for every
+ * message. Here connections are reused until they reach the per-connection message limit, sit idle
+ * for too long or fail a NOOP health check.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SmtpTransportPool {
+    
+    private final JavaMailSender mailSender;
+    
+    @Value("${notification.smtp.pool.max-size:8}")
+    private int maxSize;
+    
+    @Value("${notification.smtp.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+    
+    @Value("${notification.smtp.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+    
+    @Value("${notification.smtp.pool.validate-after-idle-ms:5000}")
+    private long validateAfterIdleMs;
+    
+    @Value("${notification.smtp.pool.borrow-timeout-ms:10000}")
+    private long borrowTimeoutMs;
+    
+    // Most recently returned connections first, so surplus ones age out at the tail
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private Semaphore permits;
+    
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxSize, true);
+    }
+    
+    /**
+     * Takes an idle connection or opens a new one.
+     *
+     * @throws BorrowTimeoutException if all connections stayed in use for borrow-timeout-ms
+     * @throws MessagingException     if a new connection could not be opened
+     */
+    public PooledTransport borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new BorrowTimeoutException("Timed out waiting for a pooled SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BorrowTimeoutException("Interrupted while waiting for a pooled SMTP connection");
+        }
+        
+        try {
+            PooledTransport transport;
+            while ((transport = idle.pollFirst()) != null) {
+                if (isHealthy(transport)) {
+                    return transport;
+                }
+                transport.close();
+            }
+            return open();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns a borrowed transport. Broken or exhausted connections are closed instead of pooled.
+     */
+    public void release(PooledTransport transport, boolean broken) {
+        try {
+            if (broken || isExhausted(transport)) {
+                transport.close();
+            } else {
+                transport.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(transport);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * Whether the transport has sent max-messages-per-connection and must not take another message.
+     */
+    public boolean isExhausted(PooledTransport transport) {
+        return transport.messagesSent >= maxMessagesPerConnection;
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.smtp.pool.eviction-interval-ms:15000}")
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleTimeoutMs;
+        Iterator<PooledTransport> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledTransport transport = it.next();
+            if (transport.lastUsedAt < threshold && idle.remove(transport)) {
+                transport.close();
+                log.debug("Evicted idle SMTP connection after {} messages", transport.messagesSent);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            transport.close();
+        }
+    }
+    
+    public int idleCount() {
+        return idle.size();
+    }
+    
+    private boolean isHealthy(PooledTransport transport) {
+        if (System.currentTimeMillis() - transport.lastUsedAt < validateAfterIdleMs) {
+            return true;
+        }
+        // SMTPTransport.isConnected() issues a NOOP, catching connections dropped by the server
+        return transport.transport.isConnected();
+    }
+    
+    private PooledTransport open() throws MessagingException {
+        if (!(mailSender instanceof JavaMailSenderImpl sender)) {
+            throw new IllegalStateException("SMTP pooling requires JavaMailSenderImpl");
+        }
+        Transport transport = sender.getSession().getTransport(sender.getProtocol());
+        String username = sender.getUsername();
+        String password = sender.getPassword();
+        if (!StringUtils.hasLength(username)) {
+            username = null;
+            password = null;
+        }
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        log.debug("Opened SMTP connection to {}:{}", sender.getHost(), sender.getPort());
+        return new PooledTransport(transport);
+    }
+    
+    /**
+     * No connection became free in time: the pool is saturated locally, which says nothing about the server.
+     */
+    public static final class BorrowTimeoutException extends MessagingException {
+        
+        private BorrowTimeoutException(String message) {
+            super(message);
+        }
+    }
+    
+    public static final class PooledTransport {
+        private final Transport transport;
+        private int messagesSent;
+        private long lastUsedAt = System.currentTimeMillis();
+        
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+        
+        public void send(MimeMessage message) throws MessagingException {
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+            messagesSent++;
+        }
+        
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+        }
+    }
+}
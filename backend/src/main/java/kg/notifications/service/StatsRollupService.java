@@ -0,0 +1,222 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maintains notification_stats_hourly incrementally from status events.
+ * <p>
+ * Rows are keyed by the hour the notification was created and its channel. Status changes are
+ * accumulated in memory and upserted as deltas every flush interval; the repair pass recomputes
+ * recent hours from the notifications table to absorb lost or late events.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatsRollupService {
+    
+    private static final String UPSERT_SQL =
+            "INSERT INTO notification_stats_hourly AS s (stat_hour, channel_type, total_created, total_sent, " +
+            "total_failed, total_pending, total_expired, delivery_time_sum_ms, avg_delivery_time_ms, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, NOW()) " +
+            "ON CONFLICT (stat_hour, channel_type) DO UPDATE SET " +
+            "total_created = s.total_created + EXCLUDED.total_created, " +
+            "total_sent = s.total_sent + EXCLUDED.total_sent, " +
+            "total_failed = s.total_failed + EXCLUDED.total_failed, " +
+            "total_pending = s.total_pending + EXCLUDED.total_pending, " +
+            "total_expired = s.total_expired + EXCLUDED.total_expired, " +
+            "delivery_time_sum_ms = s.delivery_time_sum_ms + EXCLUDED.delivery_time_sum_ms, " +
+            "avg_delivery_time_ms = (s.delivery_time_sum_ms + EXCLUDED.delivery_time_sum_ms) " +
+            "    / NULLIF(s.total_sent + EXCLUDED.total_sent, 0), " +
+            "updated_at = NOW()";
+    
+    private static final String REPAIR_SQL =
+            "INSERT INTO notification_stats_hourly AS s (stat_hour, channel_type, total_created, total_sent, " +
+            "total_failed, total_pending, total_expired, delivery_time_sum_ms, avg_delivery_time_ms, updated_at) " +
+            "SELECT date_trunc('hour', created_at), channel_type, COUNT(*), " +
+            "COUNT(*) FILTER (WHERE status IN ('SENT', 'DELIVERED')), " +
+            "COUNT(*) FILTER (WHERE status = 'FAILED'), " +
+            "COUNT(*) FILTER (WHERE status IN ('PENDING', 'SENDING')), " +
+            "COUNT(*) FILTER (WHERE status = 'EXPIRED'), " +
+            "COALESCE(SUM(EXTRACT(EPOCH FROM sent_at - created_at) * 1000) FILTER (WHERE status IN ('SENT', 'DELIVERED')), 0)::bigint, " +
+            "(AVG(EXTRACT(EPOCH FROM sent_at - created_at) * 1000) FILTER (WHERE status IN ('SENT', 'DELIVERED')))::bigint, " +
+            "NOW() " +
+            "FROM notifications WHERE created_at >= ? GROUP BY 1, 2 " +
+            "ON CONFLICT (stat_hour, channel_type) DO UPDATE SET " +
+            "total_created = EXCLUDED.total_created, total_sent = EXCLUDED.total_sent, " +
+            "total_failed = EXCLUDED.total_failed, total_pending = EXCLUDED.total_pending, " +
+            "total_expired = EXCLUDED.total_expired, delivery_time_sum_ms = EXCLUDED.delivery_time_sum_ms, " +
+            "avg_delivery_time_ms = EXCLUDED.avg_delivery_time_ms, updated_at = NOW()";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${notification.stats.repair-window-hours:26}")
+    private int repairWindowHours;
+    
+    @Value("${notification.stats.backfill-hours:168}")
+    private int backfillHours;
+    
+    private final Map<RollupKey, RollupDelta> deltas = new ConcurrentHashMap<>();
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChange(NotificationStatusEvent event) {
+        Bucket from = Bucket.of(event.oldStatus());
+        Bucket to = Bucket.of(event.newStatus());
+        if (from == to || event.createdAt() == null) {
+            return;
+        }
+        
+        RollupDelta delta = deltas.computeIfAbsent(
+                new RollupKey(event.createdAt().truncatedTo(ChronoUnit.HOURS), event.channel()),
+                key -> new RollupDelta());
+        if (from == null) {
+            delta.created.increment();
+        } else {
+            delta.counter(from).decrement();
+        }
+        delta.counter(to).increment();
+        if (to == Bucket.SENT && event.deliveryTimeMs() != null) {
+            delta.deliveryTimeSumMs.add(event.deliveryTimeMs());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.stats.flush-interval-ms:5000}")
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        LocalDateTime pruneBefore = LocalDateTime.now().minusHours(backfillHours);
+        
+        for (Map.Entry<RollupKey, RollupDelta> entry : deltas.entrySet()) {
+            RollupDelta d = entry.getValue();
+            long created = d.created.sumThenReset();
+            long sent = d.sent.sumThenReset();
+            long failed = d.failed.sumThenReset();
+            long pending = d.pending.sumThenReset();
+            long expired = d.expired.sumThenReset();
+            long deliverySum = d.deliveryTimeSumMs.sumThenReset();
+            
+            if (created == 0 && sent == 0 && failed == 0 && pending == 0 && expired == 0) {
+                if (entry.getKey().hour().isBefore(pruneBefore)) {
+                    deltas.remove(entry.getKey(), d);
+                }
+                continue;
+            }
+            rows.add(new Object[]{
+                    Timestamp.valueOf(entry.getKey().hour()), entry.getKey().channel().name(),
+                    created, sent, failed, pending, expired, deliverySum,
+                    sent > 0 ? deliverySum / sent : null
+            });
+        }
+        
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+            log.debug("Flushed {} hourly stat deltas", rows.size());
+        } catch (Exception e) {
+            // Deltas are gone; the next repair pass restores the affected hours
+            log.error("Failed to flush hourly stat deltas: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.stats.repair-interval-ms:900000}",
+            initialDelayString = "${notification.stats.repair-interval-ms:900000}")
+    public void repair() {
+        recompute(repairWindowHours);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        recompute(backfillHours);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    /**
+     * Rollups for hours starting at or after {@code since}, oldest first.
+     */
+    public List<HourlyRollup> findSince(LocalDateTime since) {
+        return jdbcTemplate.query(
+                "SELECT stat_hour, channel_type, total_created, total_sent, total_failed, total_pending, " +
+                "total_expired, delivery_time_sum_ms FROM notification_stats_hourly " +
+                "WHERE stat_hour >= ? ORDER BY stat_hour",
+                (rs, rowNum) -> new HourlyRollup(
+                        rs.getTimestamp(1).toLocalDateTime(),
+                        ChannelType.valueOf(rs.getString(2)),
+                        rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7), rs.getLong(8)),
+                Timestamp.valueOf(since.truncatedTo(ChronoUnit.HOURS)));
+    }
+    
+    private void recompute(int hours) {
+        flush();
+        long started = System.currentTimeMillis();
+        int rows = jdbcTemplate.update(REPAIR_SQL,
+                Timestamp.valueOf(LocalDateTime.now().minusHours(hours).truncatedTo(ChronoUnit.HOURS)));
+        log.info("Recomputed {} hourly stat rows over the last {}h in {}ms",
+                rows, hours, System.currentTimeMillis() - started);
+    }
+    
+    public record HourlyRollup(LocalDateTime hour, ChannelType channel, long created, long sent, long failed,
+                               long pending, long expired, long deliveryTimeSumMs) {
+    }
+    
+    private enum Bucket {
+        PENDING, SENT, FAILED, EXPIRED;
+        
+        static Bucket of(NotificationStatus status) {
+            if (status == null) {
+                return null;
+            }
+            return switch (status) {
+                case PENDING, SENDING -> PENDING;
+                case SENT, DELIVERED -> SENT;
+                case FAILED -> FAILED;
+                case EXPIRED -> EXPIRED;
+            };
+        }
+    }
+    
+    private record RollupKey(LocalDateTime hour, ChannelType channel) {
+    }
+    
+    private static final class RollupDelta {
+        private final LongAdder created = new LongAdder();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder pending = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+        private final LongAdder deliveryTimeSumMs = new LongAdder();
+        
+        private LongAdder counter(Bucket bucket) {
+            return switch (bucket) {
+                case PENDING -> pending;
+                case SENT -> sent;
+                case FAILED -> failed;
+                case EXPIRED -> expired;
+            };
+        }
+    }
+}
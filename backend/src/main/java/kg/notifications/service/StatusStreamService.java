@@ -0,0 +1,219 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kg.notifications.config.SchedulingConfig;
+import kg.notifications.dto.StatusUpdateDto;
+import kg.notifications.event.NotificationStatusEvent;
+import kg.notifications.exception.RateLimitExceededException;
+import kg.notifications.repository.NotificationStatusRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes status transitions to API clients over SSE, so they do not have to poll /status/{id}.
+ * <p>
+ * A subscription covers either a set of notification ids or all notifications of its client, and
+ * only ever sees events of that client. It is fed by the NotificationStatusEvent the dispatch path
+ * already publishes after commit: the listener appends to the subscriber's queue, and a scheduled
+ * flush writes everything queued as one {@code status} event holding a JSON array. A subscription by
+ * ids first receives the current status of those ids from one query, so transitions made before it
+ * was opened are not missed; after that nothing reads the database. A subscriber more than
+ * {@code max-queued} updates behind is disconnected and has to reconnect.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatusStreamService {
+    
+    private final NotificationStatusRepository notificationStatusRepository;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${notification.status-stream.max-ids:1000}")
+    private int maxIds;
+    
+    @Value("${notification.status-stream.max-subscriptions-per-client:20}")
+    private int maxSubscriptionsPerClient;
+    
+    @Value("${notification.status-stream.max-queued:10000}")
+    private int maxQueued;
+    
+    @Value("${notification.status-stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+    
+    @Value("${notification.status-stream.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    
+    private final Map<Integer, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    
+    private static final class Subscription {
+        final Integer clientId;
+        final Set<UUID> ids;
+        final SseEmitter emitter;
+        final Queue<StatusUpdateDto> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        volatile boolean ready;
+        volatile long lastSentAt = System.nanoTime();
+        
+        Subscription(Integer clientId, Set<UUID> ids, SseEmitter emitter) {
+            this.clientId = clientId;
+            this.ids = ids;
+            this.emitter = emitter;
+        }
+        
+        boolean matches(UUID notificationId) {
+            return ids == null || ids.contains(notificationId);
+        }
+    }
+    
+    /**
+     * Opens a stream of the client's status transitions.
+     *
+     * @param ids notifications to follow; all of the client's notifications when null or empty
+     */
+    public SseEmitter subscribe(Integer clientId, Collection<UUID> ids) {
+        Set<UUID> filter = ids == null || ids.isEmpty() ? null : new HashSet<>(ids);
+        if (filter != null && filter.size() > maxIds) {
+            throw new IllegalArgumentException("Не более " + maxIds + " ID в одной подписке");
+        }
+        List<Subscription> clientSubscriptions =
+                subscriptions.computeIfAbsent(clientId, k -> new CopyOnWriteArrayList<>());
+        if (clientSubscriptions.size() >= maxSubscriptionsPerClient) {
+            throw new RateLimitExceededException("Слишком много открытых подписок на статусы",
+                    TimeUnit.MILLISECONDS.toSeconds(heartbeatMs));
+        }
+        
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscription subscription = new Subscription(clientId, filter, emitter);
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(e -> remove(subscription));
+        // Registered before the current statuses are read, so a transition committed in between is
+        // queued and delivered after them
+        clientSubscriptions.add(subscription);
+        
+        try {
+            if (filter != null) {
+                send(subscription, currentStatuses(clientId, filter));
+            }
+        } catch (IOException e) {
+            remove(subscription);
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscription.ready = true;
+        log.debug("Status stream opened for client {} ({} ids)", clientId, filter != null ? filter.size() : "all");
+        return emitter;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChange(NotificationStatusEvent event) {
+        if (event.clientId() == null || event.oldStatus() == event.newStatus()) {
+            return;
+        }
+        List<Subscription> clientSubscriptions = subscriptions.get(event.clientId());
+        if (clientSubscriptions == null) {
+            return;
+        }
+        StatusUpdateDto update = null;
+        for (Subscription subscription : clientSubscriptions) {
+            if (!subscription.matches(event.notificationId())) {
+                continue;
+            }
+            if (update == null) {
+                update = StatusUpdateDto.of(event);
+            }
+            // Past the limit nothing more is queued; the next flush disconnects the subscriber
+            if (subscription.queued.incrementAndGet() <= maxQueued) {
+                subscription.queue.add(update);
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.status-stream.flush-interval-ms:100}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void flush() {
+        long now = System.nanoTime();
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMs);
+        for (List<Subscription> clientSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : clientSubscriptions) {
+                if (!subscription.ready) {
+                    continue;
+                }
+                if (subscription.queued.get() > maxQueued) {
+                    log.warn("Status stream of client {} fell {} updates behind, disconnecting",
+                            subscription.clientId, maxQueued);
+                    remove(subscription);
+                    subscription.emitter.complete();
+                    continue;
+                }
+                
+                List<StatusUpdateDto> updates = new ArrayList<>();
+                StatusUpdateDto update;
+                while ((update = subscription.queue.poll()) != null) {
+                    updates.add(update);
+                }
+                try {
+                    if (!updates.isEmpty()) {
+                        subscription.queued.addAndGet(-updates.size());
+                        send(subscription, updates);
+                    } else if (now - subscription.lastSentAt >= heartbeatNanos) {
+                        // Keeps proxies from closing an idle connection
+                        subscription.emitter.send(SseEmitter.event().comment("ping"));
+                        subscription.lastSentAt = now;
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the container completes the emitter
+                    remove(subscription);
+                }
+            }
+        }
+    }
+    
+    private List<StatusUpdateDto> currentStatuses(Integer clientId, Set<UUID> ids) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StatusUpdateDto> updates = new ArrayList<>(ids.size());
+        notificationStatusRepository.findStatuses(clientId, ids, List.of(), status ->
+                updates.add(StatusUpdateDto.builder()
+                        .notificationId(status.getNotificationId())
+                        .status(status.getStatus())
+                        .channel(status.getChannelType())
+                        .errorCode(status.getErrorCode())
+                        .occurredAt(now)
+                        .build()));
+        return updates;
+    }
+    
+    private void send(Subscription subscription, List<StatusUpdateDto> updates) throws IOException {
+        subscription.emitter.send(SseEmitter.event().name("status")
+                .data(objectMapper.writeValueAsString(updates), MediaType.APPLICATION_JSON));
+        subscription.lastSentAt = System.nanoTime();
+    }
+    
+    private void remove(Subscription subscription) {
+        List<Subscription> clientSubscriptions = subscriptions.get(subscription.clientId);
+        if (clientSubscriptions != null) {
+            clientSubscriptions.remove(subscription);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.repository.ChannelConfigRepository;
+import kg.notifications.util.CircuitBreaker;
+import kg.notifications.util.RateSlots;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers TELEGRAM notifications through the Bot API sendMessage method; the recipient is the chat id.
+ * <p>
+ * One shared async {@link HttpClient} (HTTP/2 where the server offers it, pooled keep-alive
+ * connections otherwise) carries all requests. Before sending, every message reserves a slot
+ * under Telegram's limits, 30 messages/s overall and 1 message/s per chat, and is fired at that
+ * time without holding a thread. Messages whose slot is further than {@code max-schedule-ahead-ms}
+ * away are deferred rather than waited for. A 429 answer's {@code retry_after} both pushes back the
+ * chat's slots and becomes the notification's next retry time. Network errors and 5xx answers count
+ * against the provider's circuit breaker; while it is open, messages are deferred without a request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelegramService implements ChannelSender {
+    
+    public static final String PROVIDER = "Telegram Bot API";
+    
+    private final ChannelConfigRepository channelConfigRepository;
+    private final DeliveryStatusService deliveryStatusService;
+    private final ProviderHealthService providerHealth;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${notification.telegram.bot-token:}")
+    private String botToken;
+    
+    @Value("${notification.telegram.api-url:https://api.telegram.org}")
+    private String apiUrl;
+    
+    @Value("${notification.telegram.global-per-second:30}")
+    private int globalPerSecond;
+    
+    @Value("${notification.telegram.chat-per-second:1}")
+    private int chatPerSecond;
+    
+    @Value("${notification.telegram.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+    
+    @Value("${notification.telegram.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+    
+    @Value("${notification.telegram.max-schedule-ahead-ms:10000}")
+    private long maxScheduleAheadMs;
+    
+    private HttpClient httpClient;
+    private RateSlots slots;
+    
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        slots = new RateSlots(globalPerSecond, chatPerSecond);
+    }
+    
+    @Override
+    public ChannelType channel() {
+        return ChannelType.TELEGRAM;
+    }
+    
+    @Override
+    public String provider() {
+        return PROVIDER;
+    }
+    
+    @Override
+    public boolean isAvailable() {
+        return botToken != null && !botToken.isBlank();
+    }
+    
+    @Override
+    public int sendBatch(List<Notification> notifications) {
+        String parseMode = getParseMode();
+        URI uri = URI.create(apiUrl + "/bot" + botToken + "/sendMessage");
+        CircuitBreaker circuit = providerHealth.breaker(ChannelType.TELEGRAM, PROVIDER);
+        
+        List<Notification> scheduled = new ArrayList<>(notifications.size());
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(notifications.size());
+        long now = System.nanoTime();
+        long horizon = now + TimeUnit.MILLISECONDS.toNanos(maxScheduleAheadMs);
+        
+        for (Notification notification : notifications) {
+            String chatId = notification.getRecipient();
+            long earliest = slots.peek(chatId, now);
+            if (earliest - horizon > 0) {
+                // The chat is saturated; don't tie up this batch waiting for it
+                deliveryStatusService.defer(notification, LocalDateTime.now().plusNanos(earliest - now));
+                continue;
+            }
+            HttpRequest request;
+            try {
+                request = HttpRequest.newBuilder(uri)
+                        .timeout(Duration.ofMillis(requestTimeoutMs))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(
+                                objectMapper.writeValueAsBytes(payload(notification, parseMode))))
+                        .build();
+            } catch (Exception e) {
+                deliveryStatusService.markFailed(notification, e.getMessage(), "UNKNOWN_ERROR");
+                continue;
+            }
+            if (!circuit.tryAcquire(System.nanoTime())) {
+                deliveryStatusService.defer(notification, LocalDateTime.now());
+                continue;
+            }
+            long delay = slots.reserve(chatId, now) - now;
+            scheduled.add(notification);
+            outcomes.add(CompletableFuture
+                    .supplyAsync(() -> request, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS))
+                    .thenCompose(r -> {
+                        long startedAt = System.nanoTime();
+                        return httpClient.sendAsync(r, HttpResponse.BodyHandlers.ofString())
+                                .handle((response, e) -> e == null ? toOutcome(response)
+                                        : Outcome.networkError(e instanceof CompletionException ? e.getCause() : e))
+                                .thenApply(outcome -> record(circuit, outcome, startedAt));
+                    }));
+        }
+        
+        // Outcomes are recorded here, on the bulkhead thread, not on the HTTP client's threads
+        List<Notification> sent = new ArrayList<>(scheduled.size());
+        for (int i = 0; i < scheduled.size(); i++) {
+            Notification notification = scheduled.get(i);
+            Outcome outcome = outcomes.get(i).join();
+            if (outcome.ok()) {
+                sent.add(notification);
+            } else if (outcome.retryAfterSeconds() != null) {
+                long retryAfterNanos = TimeUnit.SECONDS.toNanos(outcome.retryAfterSeconds());
+                slots.backOff(notification.getRecipient(), System.nanoTime() + retryAfterNanos, false);
+                log.warn("Telegram rate limited chat {}, retry after {}s",
+                        maskChat(notification.getRecipient()), outcome.retryAfterSeconds());
+                deliveryStatusService.markFailed(notification, outcome.error(), "RATE_LIMITED",
+                        LocalDateTime.now().plusSeconds(outcome.retryAfterSeconds()));
+            } else {
+                log.error("Failed to send Telegram message to {}: {}",
+                        maskChat(notification.getRecipient()), outcome.error());
+                deliveryStatusService.markFailed(notification, outcome.error(), outcome.code());
+            }
+        }
+        
+        deliveryStatusService.markSent(sent);
+        return sent.size();
+    }
+    
+    private Map<String, Object> payload(Notification notification, String parseMode) {
+        boolean html = "HTML".equalsIgnoreCase(parseMode);
+        String text = notification.getMessageBody();
+        if (notification.getSubject() != null && !notification.getSubject().isBlank()) {
+            text = html
+                    ? "<b>" + HtmlUtils.htmlEscape(notification.getSubject()) + "</b>\n" + text
+                    : notification.getSubject() + "\n\n" + text;
+        }
+        
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("chat_id", notification.getRecipient());
+        payload.put("text", text);
+        if (parseMode != null) {
+            payload.put("parse_mode", parseMode);
+        }
+        return payload;
+    }
+    
+    private static Outcome record(CircuitBreaker circuit, Outcome outcome, long startedAt) {
+        long now = System.nanoTime();
+        if ("NETWORK_ERROR".equals(outcome.code()) || "PROVIDER_ERROR".equals(outcome.code())) {
+            circuit.onFailure(now - startedAt, now);
+        } else {
+            circuit.onSuccess(now - startedAt, now);
+        }
+        return outcome;
+    }
+    
+    private Outcome toOutcome(HttpResponse<String> response) {
+        JsonNode body;
+        try {
+            body = objectMapper.readTree(response.body());
+        } catch (Exception e) {
+            return new Outcome(false, "HTTP " + response.statusCode(), "PROVIDER_ERROR", null);
+        }
+        if (response.statusCode() == 200 && body.path("ok").asBoolean()) {
+            return new Outcome(true, null, null, null);
+        }
+        
+        String description = body.path("description").asText("HTTP " + response.statusCode());
+        JsonNode retryAfter = body.path("parameters").path("retry_after");
+        if (response.statusCode() == 429 && retryAfter.canConvertToLong()) {
+            return new Outcome(false, description, "RATE_LIMITED", retryAfter.asLong());
+        }
+        return new Outcome(false, description, response.statusCode() >= 500 ? "PROVIDER_ERROR" : "REJECTED", null);
+    }
+    
+    private String getParseMode() {
+        try {
+            return channelConfigRepository.findByChannelNameAndProviderName(ChannelType.TELEGRAM, PROVIDER)
+                    .map(config -> config.getSettings() != null ? (String) config.getSettings().get("parse_mode") : null)
+                    .orElse(null);
+        } catch (Exception e) {
+            log.warn("Could not get parse mode from config: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private String maskChat(String chatId) {
+        if (chatId == null || chatId.length() <= 4) {
+            return "***";
+        }
+        return "***" + chatId.substring(chatId.length() - 4);
+    }
+    
+    private record Outcome(boolean ok, String error, String code, Long retryAfterSeconds) {
+        
+        static Outcome networkError(Throwable e) {
+            return new Outcome(false, e.getClass().getSimpleName() + ": " + e.getMessage(), "NETWORK_ERROR", null);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.MessageTemplate;
+import kg.notifications.repository.MessageTemplateRepository;
+import kg.notifications.util.CompiledTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders message_templates for /send requests that pass a templateCode.
+ * <p>
+ * Each active template is compiled once and cached by code together with its version, the row's
+ * updated_at (bumped by a trigger on every UPDATE). A periodic poll reads the versions of the cached
+ * codes only and drops entries that were changed or deactivated, so edits take effect within one
+ * poll interval; {@link #invalidate} applies a change immediately.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TemplateService {
+    
+    private final MessageTemplateRepository messageTemplateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<String, Compiled> byCode = new ConcurrentHashMap<>();
+    
+    public record Rendered(String subject, String body) {
+    }
+    
+    private record Compiled(ChannelType channel, CompiledTemplate subject, CompiledTemplate body,
+                            LocalDateTime version) {
+    }
+    
+    public Rendered render(String templateCode, ChannelType channel, Map<String, ?> variables) {
+        Compiled compiled = byCode.get(templateCode);
+        if (compiled == null) {
+            compiled = load(templateCode);
+        }
+        if (channel != null && compiled.channel() != channel) {
+            throw new IllegalArgumentException("Шаблон " + templateCode + " предназначен для канала " + compiled.channel());
+        }
+        return new Rendered(
+                compiled.subject() != null ? compiled.subject().render(variables) : null,
+                compiled.body().render(variables));
+    }
+    
+    public void invalidate(String templateCode) {
+        byCode.remove(templateCode);
+    }
+    
+    @Scheduled(fixedDelayString = "${notification.templates.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (byCode.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, LocalDateTime> current = new HashMap<>();
+            jdbcTemplate.query(
+                    "SELECT template_code, updated_at FROM message_templates " +
+                    "WHERE template_code = ANY(?) AND is_active",
+                    (RowCallbackHandler) rs -> current.put(rs.getString(1), rs.getTimestamp(2).toLocalDateTime()),
+                    (Object) byCode.keySet().toArray(String[]::new));
+            byCode.forEach((code, cached) -> {
+                if (!cached.version().equals(current.get(code))) {
+                    byCode.remove(code, cached);
+                    log.info("Template {} changed or deactivated, dropped from cache", code);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to poll template versions: {}", e.getMessage());
+        }
+    }
+    
+    private Compiled load(String templateCode) {
+        MessageTemplate template = messageTemplateRepository.findByTemplateCodeAndIsActiveTrue(templateCode)
+                .orElseThrow(() -> new IllegalArgumentException("Шаблон не найден: " + templateCode));
+        Compiled compiled = new Compiled(
+                template.getChannelType(),
+                template.getSubjectTemplate() != null ? CompiledTemplate.compile(template.getSubjectTemplate()) : null,
+                CompiledTemplate.compile(template.getBodyTemplate()),
+                template.getUpdatedAt());
+        // A concurrent loader may have won; either copy is current
+        Compiled previous = byCode.putIfAbsent(templateCode, compiled);
+        log.debug("Compiled template {} (version {})", templateCode, template.getUpdatedAt());
+        return previous != null ? previous : compiled;
+    }
+}
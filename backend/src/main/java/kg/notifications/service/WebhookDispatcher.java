@@ -0,0 +1,448 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kg.notifications.dto.StatusUpdateDto;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers notification status changes to client webhooks: the notification's callback_url,
+ * or else the client's callback_url_default.
+ * <p>
+ * Events for one client endpoint are gathered for up to {@code linger-ms} and posted together as
+ * {@code {"events": [...]}}, at most {@code max-batch-size} per request. Requests go out on the
+ * async JDK {@link HttpClient}, with at most {@code max-connections-per-host} in flight per host;
+ * further batches wait in the host's queue without holding a thread. Bodies are signed with
+ * HMAC-SHA256 over {@code "<timestamp>.<body>"} when a signing secret is set. Network errors,
+ * 408, 429 and 5xx are retried with exponential backoff and jitter from an in-memory
+ * {@link DelayQueue}, up to {@code max-attempts}; other answers drop the batch. Delivery is
+ * best effort: batches still waiting for a retry at shutdown are lost.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookDispatcher {
+    
+    public static final String SIGNATURE_HEADER = "X-Webhook-Signature";
+    public static final String TIMESTAMP_HEADER = "X-Webhook-Timestamp";
+    public static final String ID_HEADER = "X-Webhook-Id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${notification.webhooks.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${notification.webhooks.signing-secret:}")
+    private String signingSecret;
+    
+    @Value("${notification.webhooks.statuses:SENT,DELIVERED,FAILED,EXPIRED}")
+    private String[] statusNames;
+    
+    @Value("${notification.webhooks.linger-ms:200}")
+    private long lingerMs;
+    
+    @Value("${notification.webhooks.max-batch-size:100}")
+    private int maxBatchSize;
+    
+    @Value("${notification.webhooks.max-connections-per-host:4}")
+    private int maxConnectionsPerHost;
+    
+    @Value("${notification.webhooks.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+    
+    @Value("${notification.webhooks.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+    
+    @Value("${notification.webhooks.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${notification.webhooks.backoff-initial-ms:1000}")
+    private long backoffInitialMs;
+    
+    @Value("${notification.webhooks.backoff-max-ms:300000}")
+    private long backoffMaxMs;
+    
+    @Value("${notification.webhooks.max-pending:100000}")
+    private int maxPending;
+    
+    @Value("${notification.api-keys.cache-ttl-ms:60000}")
+    private long defaultUrlCacheMs;
+    
+    private Set<NotificationStatus> statuses;
+    private HttpClient httpClient;
+    private Thread timerThread;
+    private volatile boolean running;
+    
+    private final Object lock = new Object();
+    private final Map<Destination, List<Event>> buffers = new HashMap<>();
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Map<Integer, CachedUrl> defaultUrls = new ConcurrentHashMap<>();
+    private final DelayQueue<Scheduled> timers = new DelayQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    
+    private Timer latencyTimer;
+    private Counter deliveredCounter;
+    private Counter retriedCounter;
+    
+    private record Destination(Integer clientId, String url) {
+    }
+    
+    private record Event(StatusUpdateDto payload, long enqueuedAt) {
+    }
+    
+    private record Batch(Destination destination, String id, List<Event> events, int attempt) {
+        
+        Batch retry() {
+            return new Batch(destination, id, events, attempt + 1);
+        }
+    }
+    
+    private record CachedUrl(String url, long expiresAt) {
+    }
+    
+    private static final class Host {
+        final ArrayDeque<Batch> waiting = new ArrayDeque<>();
+        int inFlight;
+    }
+    
+    private record Scheduled(long dueNanos, Runnable task) implements Delayed {
+        
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        statuses = EnumSet.noneOf(NotificationStatus.class);
+        for (String name : statusNames) {
+            statuses.add(NotificationStatus.valueOf(name.trim()));
+        }
+        // HTTP/1.1, so requests in flight per host are also the connections held open to it
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        
+        latencyTimer = Timer.builder("notification.webhook.latency")
+                .description("From status change to the webhook acknowledging it")
+                .register(meterRegistry);
+        deliveredCounter = meterRegistry.counter("notification.webhook.delivered");
+        retriedCounter = meterRegistry.counter("notification.webhook.retried");
+        Gauge.builder("notification.webhook.pending", pending, AtomicInteger::get).register(meterRegistry);
+        
+        if (!enabled) {
+            log.info("Webhook delivery is disabled");
+            return;
+        }
+        running = true;
+        timerThread = Thread.ofPlatform().name("webhook-timer").daemon().start(this::runTimers);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChange(NotificationStatusEvent event) {
+        if (!running || event.oldStatus() == event.newStatus() || !statuses.contains(event.newStatus())) {
+            return;
+        }
+        String url = event.callbackUrl() != null ? event.callbackUrl() : defaultUrl(event.clientId());
+        if (url == null || url.isBlank()) {
+            return;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            drop("overflow", 1);
+            return;
+        }
+        
+        Destination destination = new Destination(event.clientId(), url);
+        Event item = new Event(StatusUpdateDto.of(event), System.nanoTime());
+        List<Event> ready = null;
+        synchronized (lock) {
+            List<Event> buffer = buffers.get(destination);
+            if (buffer == null) {
+                buffer = new ArrayList<>();
+                buffers.put(destination, buffer);
+                if (maxBatchSize > 1) {
+                    List<Event> scheduled = buffer;
+                    schedule(TimeUnit.MILLISECONDS.toNanos(lingerMs), () -> flush(destination, scheduled));
+                }
+            }
+            buffer.add(item);
+            if (buffer.size() >= maxBatchSize) {
+                buffers.remove(destination);
+                ready = buffer;
+            }
+        }
+        if (ready != null) {
+            send(new Batch(destination, UUID.randomUUID().toString(), ready, 1));
+        }
+    }
+    
+    /**
+     * Sends what is buffered, then gives requests in flight a few seconds to finish.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        List<Map.Entry<Destination, List<Event>>> remaining;
+        synchronized (lock) {
+            remaining = new ArrayList<>(buffers.entrySet());
+            buffers.clear();
+        }
+        remaining.forEach(e -> send(new Batch(e.getKey(), UUID.randomUUID().toString(), e.getValue(), 1)));
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        timerThread.interrupt();
+        if (pending.get() > 0) {
+            log.warn("{} webhook events were not delivered before shutdown", pending.get());
+        }
+    }
+    
+    private void flush(Destination destination, List<Event> buffer) {
+        synchronized (lock) {
+            if (buffers.get(destination) != buffer) {
+                return;
+            }
+            buffers.remove(destination);
+        }
+        send(new Batch(destination, UUID.randomUUID().toString(), buffer, 1));
+    }
+    
+    private void send(Batch batch) {
+        Host host;
+        try {
+            URI uri = URI.create(batch.destination().url());
+            host = hosts.computeIfAbsent(uri.getHost() + ":" + uri.getPort(), h -> new Host());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid webhook URL {}: {}", batch.destination().url(), e.getMessage());
+            drop("invalid_url", batch.events().size());
+            return;
+        }
+        synchronized (host) {
+            if (host.inFlight >= maxConnectionsPerHost) {
+                host.waiting.add(batch);
+                return;
+            }
+            host.inFlight++;
+        }
+        post(host, batch);
+    }
+    
+    /**
+     * Starts the next batch waiting for the host, or frees the slot.
+     */
+    private void next(Host host) {
+        Batch batch;
+        synchronized (host) {
+            batch = host.waiting.poll();
+            if (batch == null) {
+                host.inFlight--;
+                return;
+            }
+        }
+        post(host, batch);
+    }
+    
+    private void post(Host host, Batch batch) {
+        long startedAt = System.nanoTime();
+        try {
+            List<StatusUpdateDto> events = batch.events().stream().map(Event::payload).toList();
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("events", events));
+            String timestamp = String.valueOf(Instant.now().getEpochSecond());
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(batch.destination().url()))
+                    .timeout(Duration.ofMillis(requestTimeoutMs))
+                    .header("Content-Type", "application/json")
+                    .header(ID_HEADER, batch.id())
+                    .header(TIMESTAMP_HEADER, timestamp)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+            if (signingSecret != null && !signingSecret.isBlank()) {
+                request.header(SIGNATURE_HEADER, "sha256=" + sign(timestamp, body));
+            }
+            
+            httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        try {
+                            onResult(batch, response, error, startedAt);
+                        } finally {
+                            next(host);
+                        }
+                    });
+        } catch (Exception e) {
+            log.warn("Could not post webhook to {}: {}", batch.destination().url(), e.getMessage());
+            drop("invalid_request", batch.events().size());
+            next(host);
+        }
+    }
+    
+    private void onResult(Batch batch, HttpResponse<Void> response, Throwable error, long startedAt) {
+        long now = System.nanoTime();
+        int status = response != null ? response.statusCode() : 0;
+        meterRegistry.timer("notification.webhook.request", "outcome", status == 0 ? "error" : (status / 100) + "xx")
+                .record(now - startedAt, TimeUnit.NANOSECONDS);
+        
+        if (status >= 200 && status < 300) {
+            batch.events().forEach(e -> latencyTimer.record(now - e.enqueuedAt(), TimeUnit.NANOSECONDS));
+            deliveredCounter.increment(batch.events().size());
+            pending.addAndGet(-batch.events().size());
+            return;
+        }
+        
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String reason = cause != null ? cause.getClass().getSimpleName() + ": " + cause.getMessage() : "HTTP " + status;
+        boolean retryable = status == 0 || status == 408 || status == 429 || status >= 500;
+        if (!retryable) {
+            log.warn("Webhook {} rejected {} events: {}", batch.destination().url(), batch.events().size(), reason);
+            drop("rejected", batch.events().size());
+            return;
+        }
+        if (batch.attempt() >= maxAttempts || !running) {
+            log.warn("Webhook {} failed {} times, dropping {} events: {}",
+                    batch.destination().url(), batch.attempt(), batch.events().size(), reason);
+            drop("exhausted", batch.events().size());
+            return;
+        }
+        
+        long delayMs = backoff(batch.attempt());
+        if (response != null) {
+            delayMs = Math.max(delayMs, retryAfterMs(response));
+        }
+        log.debug("Webhook {} failed ({}), attempt {} retrying in {} ms",
+                batch.destination().url(), reason, batch.attempt(), delayMs);
+        retriedCounter.increment();
+        schedule(TimeUnit.MILLISECONDS.toNanos(delayMs), () -> send(batch.retry()));
+    }
+    
+    /**
+     * Exponential backoff with full jitter over the upper half: [d/2, d] for d = initial * 2^(attempt-1).
+     */
+    private long backoff(int attempt) {
+        long delay = Math.min(backoffInitialMs << Math.min(attempt - 1, 30), backoffMaxMs);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+    
+    private static long retryAfterMs(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .map(value -> {
+                    try {
+                        return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+                    } catch (NumberFormatException e) {
+                        return 0L;
+                    }
+                })
+                .orElse(0L);
+    }
+    
+    private String sign(String timestamp, byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(signingSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update(timestamp.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) '.');
+        return HexFormat.of().formatHex(mac.doFinal(body));
+    }
+    
+    private String defaultUrl(Integer clientId) {
+        if (clientId == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        CachedUrl cached = defaultUrls.get(clientId);
+        if (cached == null || cached.expiresAt() < now) {
+            String url;
+            try {
+                url = jdbcTemplate.query("SELECT callback_url_default FROM api_clients WHERE client_id = ?",
+                        rs -> rs.next() ? rs.getString(1) : null, clientId);
+            } catch (Exception e) {
+                log.warn("Could not load default callback URL of client {}: {}", clientId, e.getMessage());
+                url = cached != null ? cached.url() : null;
+            }
+            cached = new CachedUrl(url, now + defaultUrlCacheMs);
+            defaultUrls.put(clientId, cached);
+        }
+        return cached.url();
+    }
+    
+    private void schedule(long delayNanos, Runnable task) {
+        timers.add(new Scheduled(System.nanoTime() + delayNanos, task));
+    }
+    
+    private void runTimers() {
+        while (true) {
+            try {
+                timers.take().task().run();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Webhook timer task failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+    
+    private int inFlight() {
+        int total = 0;
+        for (Host host : hosts.values()) {
+            synchronized (host) {
+                total += host.inFlight + host.waiting.size();
+            }
+        }
+        return total;
+    }
+    
+    private void drop(String reason, int events) {
+        meterRegistry.counter("notification.webhook.dropped", "reason", reason).increment(events);
+        if (!"overflow".equals(reason)) {
+            pending.addAndGet(-events);
+        }
+    }
+}
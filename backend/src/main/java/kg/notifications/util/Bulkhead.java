@@ -0,0 +1,142 @@
+package kg.notifications.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Isolated executor for one downstream: at most {@code concurrency} tasks running and a queue bounded
+ * by {@code capacity} units of work (for example notifications) rather than by tasks.
+ * <p>
+ * On platform threads the limit is a fixed pool of that size. On virtual threads every task gets a
+ * new thread, which first waits for one of {@code concurrency} permits of a fair semaphore; waiting
+ * there is the queue.
+ * <p>
+ * The bound is checked by the producer through {@link #hasCapacity()} before it takes on more work,
+ * so the queue can overshoot by at most one submission per producer. A task that waited longer than
+ * {@code queueTimeoutMs} is not run; its {@code onTimeout} callback is called instead.
+ */
+public final class Bulkhead {
+    
+    private final String name;
+    private final int concurrency;
+    private final int capacity;
+    private final long queueTimeoutNanos;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    
+    private Bulkhead(String name, int concurrency, int capacity, long queueTimeoutMs,
+                     ExecutorService executor, Semaphore permits) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.capacity = capacity;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.executor = executor;
+        this.permits = permits;
+    }
+    
+    /**
+     * A fixed pool of {@code concurrency} threads.
+     */
+    public static Bulkhead platform(String name, int concurrency, int capacity, long queueTimeoutMs,
+                                    ThreadFactory threadFactory) {
+        return new Bulkhead(name, concurrency, capacity, queueTimeoutMs,
+                new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(), threadFactory),
+                null);
+    }
+    
+    /**
+     * A virtual thread per task, {@code concurrency} of them past the semaphore at a time.
+     */
+    public static Bulkhead virtual(String name, int concurrency, int capacity, long queueTimeoutMs) {
+        return new Bulkhead(name, concurrency, capacity, queueTimeoutMs,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("send-" + name + "-", 0).factory()),
+                new Semaphore(concurrency, true));
+    }
+    
+    public boolean hasCapacity() {
+        return queued.get() < capacity;
+    }
+    
+    /**
+     * Queues {@code task}, accounted as {@code units} of the capacity until it starts.
+     * {@code onDone} runs after either callback, on the bulkhead thread.
+     */
+    public void submit(int units, Runnable task, Runnable onTimeout, Runnable onDone) {
+        long enqueuedAt = System.nanoTime();
+        queued.addAndGet(units);
+        try {
+            executor.execute(() -> {
+                boolean admitted = admit(enqueuedAt);
+                queued.addAndGet(-units);
+                active.incrementAndGet();
+                try {
+                    if (admitted) {
+                        task.run();
+                    } else {
+                        onTimeout.run();
+                    }
+                } finally {
+                    if (admitted && permits != null) {
+                        permits.release();
+                    }
+                    active.decrementAndGet();
+                    onDone.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.addAndGet(-units);
+            throw e;
+        }
+    }
+    
+    /**
+     * Whether the task may run: still within the queue timeout and, on virtual threads, holding a permit.
+     */
+    private boolean admit(long enqueuedAt) {
+        long remaining = queueTimeoutNanos - (System.nanoTime() - enqueuedAt);
+        if (permits == null) {
+            return remaining >= 0;
+        }
+        try {
+            return permits.tryAcquire(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // Shutting down: handled like a timeout, so the work is handed back
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    public String name() {
+        return name;
+    }
+    
+    public int concurrency() {
+        return concurrency;
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    public int queued() {
+        return queued.get();
+    }
+    
+    public int active() {
+        return active.get();
+    }
+    
+    public ExecutorService executor() {
+        return executor;
+    }
+}
@@ -0,0 +1,176 @@
+package kg.notifications.util;
+
+/**
+ * Circuit breaker over a count-based window of the most recent calls to one provider.
+ * <p>
+ * While CLOSED, outcomes and latencies are recorded; once the window holds {@code minimumCalls}
+ * and either the failure rate or the slow-call rate reaches its threshold, the breaker opens and
+ * {@link #tryAcquire} refuses calls for {@code openNanos} without touching the provider. It then
+ * goes HALF_OPEN and lets one probe through at a time: {@code probes} good calls in a row close it,
+ * a failed or slow one opens it again. All methods are a few field updates under the monitor.
+ */
+public final class CircuitBreaker {
+    
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    public interface Listener {
+        void onStateChange(State from, State to);
+    }
+    
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+    
+    private final byte[] window;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final int slowCallRatePercent;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int probes;
+    private final Listener listener;
+    
+    private State state = State.CLOSED;
+    private int position;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private long openUntil;
+    private boolean probeInFlight;
+    private int probeSuccesses;
+    
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, int slowCallRatePercent,
+                          long slowCallNanos, long openNanos, int probes, Listener listener) {
+        this.window = new byte[Math.max(windowSize, 1)];
+        this.minimumCalls = Math.min(Math.max(minimumCalls, 1), window.length);
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallRatePercent = slowCallRatePercent;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.probes = Math.max(probes, 1);
+        this.listener = listener;
+    }
+    
+    /**
+     * Takes permission for one call. Always granted while CLOSED; while HALF_OPEN only if no other
+     * probe is in flight. Every granted call must be followed by {@link #onSuccess} or {@link #onFailure}.
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.OPEN) {
+            if (nowNanos - openUntil < 0) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+    
+    /**
+     * Whether {@link #tryAcquire} could currently succeed, without taking anything.
+     */
+    public synchronized boolean isCallPermitted(long nowNanos) {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> nowNanos - openUntil >= 0;
+            case HALF_OPEN -> !probeInFlight;
+        };
+    }
+    
+    /**
+     * Gives back a permission taken by {@link #tryAcquire} for a call that was never made; nothing is recorded.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+    
+    public void onSuccess(long latencyNanos, long nowNanos) {
+        record(latencyNanos > slowCallNanos ? SLOW : 0, nowNanos);
+    }
+    
+    public void onFailure(long latencyNanos, long nowNanos) {
+        record((byte) (FAILED | (latencyNanos > slowCallNanos ? SLOW : 0)), nowNanos);
+    }
+    
+    public synchronized State state() {
+        return state;
+    }
+    
+    public synchronized int calls() {
+        return calls;
+    }
+    
+    public synchronized int failureRate() {
+        return calls == 0 ? 0 : failures * 100 / calls;
+    }
+    
+    public synchronized int slowCallRate() {
+        return calls == 0 ? 0 : slowCalls * 100 / calls;
+    }
+    
+    private synchronized void record(byte outcome, long nowNanos) {
+        switch (state) {
+            case OPEN -> {
+                // Late result of a call made before the breaker opened
+            }
+            case HALF_OPEN -> {
+                probeInFlight = false;
+                if (outcome != 0) {
+                    open(nowNanos);
+                } else if (++probeSuccesses >= probes) {
+                    reset();
+                    transition(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                if (calls == window.length) {
+                    byte evicted = window[position];
+                    failures -= evicted & FAILED;
+                    slowCalls -= (evicted & SLOW) >> 1;
+                } else {
+                    calls++;
+                }
+                window[position] = outcome;
+                position = (position + 1) % window.length;
+                failures += outcome & FAILED;
+                slowCalls += (outcome & SLOW) >> 1;
+                
+                if (calls >= minimumCalls && (failures * 100 >= failureRatePercent * calls
+                        || slowCalls * 100 >= slowCallRatePercent * calls)) {
+                    open(nowNanos);
+                }
+            }
+        }
+    }
+    
+    private void open(long nowNanos) {
+        openUntil = nowNanos + openNanos;
+        probeInFlight = false;
+        probeSuccesses = 0;
+        transition(State.OPEN);
+    }
+    
+    private void reset() {
+        position = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        probeSuccesses = 0;
+    }
+    
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        if (listener != null && from != to) {
+            listener.onStateChange(from, to);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package kg.notifications.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message template parsed once into literal and {@code {{variable}}} segments.
+ * <p>
+ * Rendering walks the segment arrays and appends into a per-thread {@link StringBuilder}, so the
+ * only allocation per call is the resulting String. Whitespace inside the braces is ignored;
+ * an unclosed {@code {{} is kept as literal text.
+ */
+public final class CompiledTemplate {
+    
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+    
+    private final String[] literals;
+    private final String[] variables;
+    
+    private CompiledTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+    }
+    
+    /**
+     * literals[i] precedes variables[i]; the last literal has no variable after it.
+     */
+    public static CompiledTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int pos = 0;
+        int literalStart = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            int close = open < 0 ? -1 : source.indexOf("}}", open + 2);
+            if (close < 0) {
+                break;
+            }
+            String name = source.substring(open + 2, close).trim();
+            if (name.isEmpty()) {
+                pos = close + 2;
+                continue;
+            }
+            literals.add(source.substring(literalStart, open));
+            variables.add(name);
+            pos = close + 2;
+            literalStart = pos;
+        }
+        literals.add(source.substring(literalStart));
+        return new CompiledTemplate(literals.toArray(String[]::new), variables.toArray(String[]::new));
+    }
+    
+    public String render(Map<String, ?> values) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        for (int i = 0; i < variables.length; i++) {
+            sb.append(literals[i]);
+            Object value = values != null ? values.get(variables[i]) : null;
+            if (value == null) {
+                throw new IllegalArgumentException("Не передана переменная шаблона: " + variables[i]);
+            }
+            if (value instanceof CharSequence text) {
+                sb.append(text);
+            } else {
+                sb.append(value);
+            }
+        }
+        sb.append(literals[variables.length]);
+        
+        String result = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            // Don't pin one oversized render's buffer to the thread
+            BUFFER.remove();
+        }
+        return result;
+    }
+    
+    public String[] variables() {
+        return variables.clone();
+    }
+}
@@ -0,0 +1,95 @@
+package kg.notifications.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: timers are hashed into {@code wheelSize} buckets by deadline,
+ * so scheduling is O(1) and each tick only touches a single bucket.
+ * <p>
+ * Timers further away than one revolution ({@code tickMs * wheelSize}) carry a round counter.
+ * Not thread-safe: callers must serialize access.
+ */
+public class HashedTimingWheel<T> {
+    
+    private final long tickMs;
+    private final int mask;
+    private final List<ArrayDeque<Timer<T>>> buckets;
+    private long currentTick;
+    private int size;
+    
+    public HashedTimingWheel(long tickMs, int wheelSize, long startMillis) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be positive");
+        }
+        int normalizedSize = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.tickMs = tickMs;
+        this.mask = normalizedSize - 1;
+        this.buckets = new ArrayList<>(normalizedSize);
+        for (int i = 0; i < normalizedSize; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.currentTick = startMillis / tickMs;
+    }
+    
+    /**
+     * Schedules an item. The deadline is rounded up to a tick, so an item never fires before it;
+     * deadlines in the past fire on the next tick.
+     */
+    public void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(Math.floorDiv(deadlineMillis + tickMs - 1, tickMs), currentTick + 1);
+        long rounds = (deadlineTick - currentTick - 1) / buckets.size();
+        buckets.get((int) (deadlineTick & mask)).add(new Timer<>(item, rounds));
+        size++;
+    }
+    
+    /**
+     * Advances the wheel up to {@code nowMillis}, passing every expired item to {@code expired}.
+     *
+     * @return number of expired items
+     */
+    public int advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMs;
+        int fired = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            Iterator<Timer<T>> it = buckets.get((int) (currentTick & mask)).iterator();
+            while (it.hasNext()) {
+                Timer<T> timer = it.next();
+                if (timer.rounds <= 0) {
+                    it.remove();
+                    size--;
+                    fired++;
+                    expired.accept(timer.item);
+                } else {
+                    timer.rounds--;
+                }
+            }
+        }
+        return fired;
+    }
+    
+    /**
+     * Time span covered by one revolution of the wheel.
+     */
+    public long spanMillis() {
+        return tickMs * buckets.size();
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private static final class Timer<T> {
+        private final T item;
+        private long rounds;
+        
+        private Timer(T item, long rounds) {
+            this.item = item;
+            this.rounds = rounds;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package kg.notifications.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed ring of per-minute counter buckets, each holding {@code keys} independent counters.
+ * <p>
+ * A slot is reused once its minute falls out of the window: the first writer of the new minute
+ * resets it under a lock, every other write is a plain {@link LongAdder#add}. Reads sum whichever
+ * slots are stamped with a minute inside the requested range, so stale slots are never counted.
+ */
+public final class MinuteCounterRing {
+    
+    private static final long MINUTE_MILLIS = 60_000;
+    
+    private final int minutes;
+    private final int keys;
+    private final AtomicLongArray stamps;
+    private final LongAdder[] counts;
+    
+    public MinuteCounterRing(int minutes, int keys) {
+        this.minutes = minutes;
+        this.keys = keys;
+        this.stamps = new AtomicLongArray(minutes);
+        this.counts = new LongAdder[minutes * keys];
+        for (int i = 0; i < minutes; i++) {
+            stamps.set(i, -1);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+    
+    public void add(int key, long delta, long epochMillis) {
+        long minute = epochMillis / MINUTE_MILLIS;
+        int slot = (int) (minute % minutes);
+        if (stamps.get(slot) != minute) {
+            rotate(slot, minute);
+        }
+        counts[slot * keys + key].add(delta);
+    }
+    
+    /**
+     * Per-key totals of all minutes overlapping {@code [fromMillis, toMillis]}, capped to the ring size.
+     */
+    public long[] sum(long fromMillis, long toMillis) {
+        long toMinute = toMillis / MINUTE_MILLIS;
+        long fromMinute = Math.max(fromMillis / MINUTE_MILLIS, toMinute - minutes + 1);
+        long[] totals = new long[keys];
+        for (long minute = fromMinute; minute <= toMinute; minute++) {
+            addBucket(minute, totals);
+        }
+        return totals;
+    }
+    
+    /**
+     * Per-key counts of a single minute, all zero if it is no longer (or not yet) in the ring.
+     */
+    public long[] bucket(long epochMinute) {
+        long[] totals = new long[keys];
+        addBucket(epochMinute, totals);
+        return totals;
+    }
+    
+    private void addBucket(long minute, long[] totals) {
+        int slot = (int) (minute % minutes);
+        if (stamps.get(slot) != minute) {
+            return;
+        }
+        int base = slot * keys;
+        for (int k = 0; k < keys; k++) {
+            totals[k] += counts[base + k].sum();
+        }
+    }
+    
+    private synchronized void rotate(int slot, long minute) {
+        if (stamps.get(slot) >= minute) {
+            return;
+        }
+        int base = slot * keys;
+        for (int k = 0; k < keys; k++) {
+            counts[base + k].reset();
+        }
+        stamps.set(slot, minute);
+    }
+}
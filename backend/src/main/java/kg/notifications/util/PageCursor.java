@@ -0,0 +1,44 @@
+package kg.notifications.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination token: the (created_at, id) of the row a page starts after,
+ * plus the direction. Listings are ordered newest first, so {@code backward} pages walk
+ * towards newer rows.
+ */
+public record PageCursor(boolean backward, LocalDateTime createdAt, String id) {
+    
+    private static final char SEPARATOR = '|';
+    
+    public String encode() {
+        String raw = (backward ? "p" : "n") + SEPARATOR + createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * @return null for a null or empty token (first page)
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int first = raw.indexOf(SEPARATOR);
+            int second = raw.indexOf(SEPARATOR, first + 1);
+            String direction = raw.substring(0, first);
+            if (second < 0 || !("p".equals(direction) || "n".equals(direction))) {
+                throw new IllegalArgumentException(token);
+            }
+            return new PageCursor("p".equals(direction),
+                    LocalDateTime.parse(raw.substring(first + 1, second)),
+                    raw.substring(second + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор страницы");
+        }
+    }
+}
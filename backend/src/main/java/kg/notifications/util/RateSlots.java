@@ -0,0 +1,73 @@
+package kg.notifications.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reserves send times under a global rate and a per-key rate (for example per chat).
+ * <p>
+ * Each reservation returns the earliest moment that honours both limits and moves both
+ * horizons past it, so callers can schedule sends ahead of time instead of polling a bucket.
+ * Sends are spaced evenly; there is no burst allowance.
+ */
+public final class RateSlots {
+    
+    private static final int PRUNE_THRESHOLD = 10_000;
+    
+    private final long globalIntervalNanos;
+    private final long keyIntervalNanos;
+    private final Map<String, Long> keyNext = new HashMap<>();
+    private long globalNext = System.nanoTime();
+    
+    public RateSlots(int globalPerSecond, int keyPerSecond) {
+        this.globalIntervalNanos = 1_000_000_000L / Math.max(globalPerSecond, 1);
+        this.keyIntervalNanos = 1_000_000_000L / Math.max(keyPerSecond, 1);
+    }
+    
+    /**
+     * @return the reserved send time, in {@link System#nanoTime()} terms
+     */
+    public synchronized long reserve(String key, long nowNanos) {
+        long slot = Math.max(nowNanos, globalNext);
+        Long next = keyNext.get(key);
+        if (next != null && next - slot > 0) {
+            slot = next;
+        }
+        globalNext = slot + globalIntervalNanos;
+        keyNext.put(key, slot + keyIntervalNanos);
+        if (keyNext.size() > PRUNE_THRESHOLD) {
+            prune(nowNanos);
+        }
+        return slot;
+    }
+    
+    /**
+     * Earliest time a reservation for {@code key} could get, without taking it.
+     */
+    public synchronized long peek(String key, long nowNanos) {
+        long slot = Math.max(nowNanos, globalNext);
+        Long next = keyNext.get(key);
+        return next != null && next - slot > 0 ? next : slot;
+    }
+    
+    /**
+     * Pushes the key's horizon (and with {@code global} set, everyone's) to at least {@code untilNanos},
+     * e.g. after the provider answered with a retry-after.
+     */
+    public synchronized void backOff(String key, long untilNanos, boolean global) {
+        keyNext.merge(key, untilNanos, Math::max);
+        if (global && untilNanos - globalNext > 0) {
+            globalNext = untilNanos;
+        }
+    }
+    
+    private void prune(long nowNanos) {
+        Iterator<Long> it = keyNext.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() - nowNanos <= 0) {
+                it.remove();
+            }
+        }
+    }
+}
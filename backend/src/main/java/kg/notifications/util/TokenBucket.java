@@ -0,0 +1,76 @@
+package kg.notifications.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket implemented as GCRA (generic cell rate algorithm).
+ * <p>
+ * The whole state is one theoretical arrival time, advanced by CAS, so a check is a few arithmetic
+ * operations and never allocates. The bucket holds up to {@code capacity} permits and refills
+ * at {@code capacity} permits per period.
+ */
+public final class TokenBucket {
+    
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE / 2);
+    private final AtomicLong acquired = new AtomicLong();
+    private volatile Limits limits;
+    
+    public TokenBucket(int capacity, long periodNanos) {
+        configure(capacity, periodNanos);
+    }
+    
+    public void configure(int capacity, long periodNanos) {
+        int permits = Math.max(capacity, 1);
+        long interval = Math.max(periodNanos / permits, 1);
+        this.limits = new Limits(permits, interval, interval * permits);
+    }
+    
+    /**
+     * Takes {@code permits} if available. A request larger than the capacity never fits; callers should
+     * reject it up front, see {@link #capacity()}.
+     *
+     * @return 0 if acquired, otherwise nanoseconds until the request would fit
+     */
+    public long tryAcquire(int permits, long nowNanos) {
+        Limits l = limits;
+        long increment = permits * l.intervalNanos;
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long newTat = Math.max(tat, nowNanos) + increment;
+            long excess = newTat - nowNanos - l.burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                acquired.addAndGet(permits);
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Unconditionally consumes permits used elsewhere, e.g. on other replicas. Usage beyond an empty
+     * bucket is kept as debt, so local requests wait until it has been refilled.
+     */
+    public void charge(long permits, long nowNanos) {
+        if (permits <= 0) {
+            return;
+        }
+        long increment = permits * limits.intervalNanos;
+        theoreticalArrival.getAndUpdate(tat -> Math.max(tat, nowNanos) + increment);
+    }
+    
+    public int capacity() {
+        return limits.capacity;
+    }
+    
+    /**
+     * Permits acquired locally since the last call.
+     */
+    public long drainAcquired() {
+        return acquired.getAndSet(0);
+    }
+    
+    private record Limits(int capacity, long intervalNanos, long burstNanos) {
+    }
+}
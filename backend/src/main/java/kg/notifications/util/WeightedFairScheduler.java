@@ -0,0 +1,67 @@
+package kg.notifications.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Smooth weighted round-robin over a fixed set of lanes.
+ * <p>
+ * Every lane with a positive weight is picked first in proportion to its weight, so lower lanes
+ * keep a guaranteed share instead of waiting for higher ones to drain. The remaining lanes follow
+ * by weight, which keeps the scheduler work-conserving when the picked lane is empty.
+ */
+public class WeightedFairScheduler<T> {
+    
+    private final List<T> lanes;
+    private final int[] weights;
+    private final int[] current;
+    private final int totalWeight;
+    
+    public WeightedFairScheduler(Map<T, Integer> laneWeights) {
+        this.lanes = new ArrayList<>(laneWeights.keySet());
+        this.lanes.sort(Comparator.comparing(laneWeights::get).reversed());
+        this.weights = new int[lanes.size()];
+        this.current = new int[lanes.size()];
+        int total = 0;
+        for (int i = 0; i < lanes.size(); i++) {
+            weights[i] = Math.max(1, laneWeights.get(lanes.get(i)));
+            total += weights[i];
+        }
+        this.totalWeight = total;
+    }
+    
+    /**
+     * Returns all lanes in the order they should be tried for the next pick.
+     * Lanes in {@code starved} go first regardless of their turn.
+     */
+    public synchronized List<T> nextOrder(Collection<T> starved) {
+        int picked = 0;
+        for (int i = 0; i < weights.length; i++) {
+            current[i] += weights[i];
+            if (current[i] > current[picked]) {
+                picked = i;
+            }
+        }
+        current[picked] -= totalWeight;
+        
+        List<T> order = new ArrayList<>(lanes.size());
+        for (T lane : lanes) {
+            if (starved.contains(lane)) {
+                order.add(lane);
+            }
+        }
+        T first = lanes.get(picked);
+        if (!order.contains(first)) {
+            order.add(first);
+        }
+        for (T lane : lanes) {
+            if (!order.contains(lane)) {
+                order.add(lane);
+            }
+        }
+        return order;
+    }
+}
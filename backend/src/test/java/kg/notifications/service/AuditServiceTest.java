@@ -0,0 +1,180 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuditServiceTest {
+    
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Integer> insertedBatches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch insertEntered = new CountDownLatch(1);
+    private final CountDownLatch insertReleased = new CountDownLatch(1);
+    private volatile boolean holdInserts;
+    
+    private AuditService auditService;
+    
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(invocation -> {
+            Collection<?> batch = invocation.getArgument(1);
+            if (holdInserts) {
+                insertEntered.countDown();
+                insertReleased.await(5, TimeUnit.SECONDS);
+            }
+            if (batch.toString().contains("entityId=bad")) {
+                throw new IllegalStateException("value too long for type character varying(100)");
+            }
+            insertedBatches.add(batch.size());
+            return new int[0][];
+        });
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        
+        auditService = new AuditService(jdbcTemplate, new ObjectMapper(), meterRegistry, transactionTemplate);
+        ReflectionTestUtils.setField(auditService, "queueCapacity", 2);
+        ReflectionTestUtils.setField(auditService, "batchSize", 500);
+        ReflectionTestUtils.setField(auditService, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(auditService, "overflowPolicy", "DROP");
+        ReflectionTestUtils.setField(auditService, "blockTimeoutMs", 50L);
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        insertReleased.countDown();
+        auditService.stop();
+    }
+    
+    @Test
+    void writesQueuedEventsAsOneBatch() throws InterruptedException {
+        ReflectionTestUtils.setField(auditService, "queueCapacity", 100);
+        ReflectionTestUtils.setField(auditService, "flushIntervalMs", 200L);
+        auditService.start();
+        
+        for (int i = 0; i < 50; i++) {
+            log("n" + i);
+        }
+        auditService.stop();
+        
+        assertEquals(List.of(50), insertedBatches);
+        assertEquals(50, counter("audit.events.written"));
+        assertEquals(0, counter("audit.events.dropped"));
+    }
+    
+    @Test
+    void dropPolicyDiscardsWhenQueueIsFull() throws InterruptedException {
+        startWithFlusherBusy();
+        
+        log("queued-1");
+        log("queued-2");
+        log("dropped-1");
+        log("dropped-2");
+        
+        assertEquals(2, counter("audit.events.dropped"));
+        insertReleased.countDown();
+        auditService.stop();
+        assertEquals(3, counter("audit.events.written"));
+    }
+    
+    @Test
+    void blockPolicyGivesUpAfterBlockTimeout() throws InterruptedException {
+        ReflectionTestUtils.setField(auditService, "overflowPolicy", "BLOCK");
+        startWithFlusherBusy();
+        log("queued-1");
+        log("queued-2");
+        
+        long startedAt = System.nanoTime();
+        log("dropped");
+        
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, counter("audit.events.dropped"));
+    }
+    
+    @Test
+    void blockPolicyWaitsForSpace() throws InterruptedException {
+        ReflectionTestUtils.setField(auditService, "overflowPolicy", "BLOCK");
+        ReflectionTestUtils.setField(auditService, "blockTimeoutMs", 5_000L);
+        startWithFlusherBusy();
+        log("queued-1");
+        log("queued-2");
+        
+        Thread.ofVirtual().start(() -> {
+            sleep(100);
+            insertReleased.countDown();
+        });
+        log("waited");
+        auditService.stop();
+        
+        assertEquals(0, counter("audit.events.dropped"));
+        assertEquals(4, counter("audit.events.written"));
+    }
+    
+    @Test
+    void failedBatchFallsBackToSingleInserts() throws InterruptedException {
+        ReflectionTestUtils.setField(auditService, "queueCapacity", 100);
+        ReflectionTestUtils.setField(auditService, "flushIntervalMs", 200L);
+        auditService.start();
+        
+        log("ok-1");
+        log("bad");
+        log("ok-2");
+        auditService.stop();
+        
+        assertEquals(List.of(1, 1), insertedBatches);
+        assertEquals(2, counter("audit.events.written"));
+        assertEquals(1, counter("audit.events.dropped"));
+    }
+    
+    /**
+     * Starts the writer with its first insert held open, so further events stay in the queue.
+     */
+    private void startWithFlusherBusy() throws InterruptedException {
+        holdInserts = true;
+        auditService.start();
+        log("in-flight");
+        assertTrue(insertEntered.await(5, TimeUnit.SECONDS));
+    }
+    
+    private void log(String entityId) {
+        auditService.logAction(null, "TEST", "NOTIFICATION", entityId, null, null, null, null);
+    }
+    
+    private double counter(String name) {
+        return meterRegistry.counter(name).count();
+    }
+    
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
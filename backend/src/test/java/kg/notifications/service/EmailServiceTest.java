@@ -0,0 +1,126 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.repository.ChannelConfigRepository;
+import kg.notifications.util.CircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailServiceTest {
+    
+    private final ChannelConfigRepository channelConfigRepository = mock(ChannelConfigRepository.class);
+    private final DeliveryStatusService deliveryStatusService = mock(DeliveryStatusService.class);
+    private final ProviderHealthService providerHealth = mock(ProviderHealthService.class);
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 1, 50, 100, Long.MAX_VALUE, 60_000_000_000L, 1, null);
+    
+    private SmtpTestServer server;
+    private SmtpTransportPool pool;
+    private EmailService emailService;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new SmtpTestServer();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(server.port());
+        mailSender.setProtocol("smtp");
+        
+        pool = new SmtpTransportPool(mailSender);
+        ReflectionTestUtils.setField(pool, "maxSize", 1);
+        ReflectionTestUtils.setField(pool, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 100);
+        ReflectionTestUtils.setField(pool, "validateAfterIdleMs", 60_000L);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMs", 50L);
+        pool.init();
+        
+        when(channelConfigRepository.findByChannelNameAndProviderName(ChannelType.EMAIL, EmailService.PROVIDER))
+                .thenReturn(Optional.empty());
+        when(providerHealth.breaker(ChannelType.EMAIL, EmailService.PROVIDER)).thenReturn(breaker);
+        emailService = new EmailService(mailSender, pool, channelConfigRepository, deliveryStatusService, providerHealth);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        pool.close();
+        server.close();
+    }
+    
+    @Test
+    void sendsGroupOverOneConnectionAndMarksItSent() {
+        List<Notification> group = List.of(claimed("a@example.com"), claimed("b@example.com"), claimed("c@example.com"));
+        
+        assertEquals(3, emailService.sendBatch(group));
+        
+        assertEquals(1, server.connections.get());
+        assertEquals(3, server.messages.get());
+        verify(deliveryStatusService).markSent(group);
+        assertEquals(3, breaker.calls());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void borrowTimeoutCountsAnAttemptAndLeavesBreakerAlone() throws Exception {
+        SmtpTransportPool.PooledTransport held = pool.borrow();
+        List<Notification> group = List.of(claimed("a@example.com"), claimed("b@example.com"));
+        
+        assertEquals(0, emailService.sendBatch(group));
+        
+        ArgumentCaptor<List<DeliveryStatusService.Failure>> failures = ArgumentCaptor.forClass(List.class);
+        verify(deliveryStatusService).markFailed(failures.capture());
+        assertEquals(group, failures.getValue().stream().map(DeliveryStatusService.Failure::notification).toList());
+        failures.getValue().forEach(f -> assertEquals("SMTP_POOL_EXHAUSTED", f.errorCode()));
+        verify(deliveryStatusService, never()).defer(any(), any());
+        assertEquals(0, breaker.calls());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        pool.release(held, false);
+    }
+    
+    @Test
+    void rejectedRecipientFailsOnlyThatNotification() {
+        Notification rejected = claimed("reject@example.com");
+        Notification accepted = claimed("ok@example.com");
+        
+        assertEquals(1, emailService.sendBatch(List.of(rejected, accepted)));
+        
+        verify(deliveryStatusService).markFailed(eq(rejected), anyString(), eq("MESSAGING_ERROR"));
+        verify(deliveryStatusService).markSent(List.of(accepted));
+        verify(deliveryStatusService, never()).markFailed(anyList());
+        // A rejected recipient says nothing about the relay, and the session stays usable
+        assertEquals(0, breaker.failureRate());
+        assertEquals(1, server.connections.get());
+    }
+    
+    private static Notification claimed(String recipient) {
+        return Notification.builder()
+                .notificationId(UUID.randomUUID())
+                .channelType(ChannelType.EMAIL)
+                .recipient(recipient)
+                .subject("Test")
+                .messageBody("Hello")
+                .status(NotificationStatus.SENDING)
+                .retryCount(0)
+                .maxRetries(5)
+                .build();
+    }
+}
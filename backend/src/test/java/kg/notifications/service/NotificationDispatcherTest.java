@@ -0,0 +1,104 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.Notification;
+import kg.notifications.entity.NotificationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationDispatcherTest {
+    
+    private final NotificationQueueService queueService = mock(NotificationQueueService.class);
+    private final ChannelSenderRegistry senderRegistry = mock(ChannelSenderRegistry.class);
+    private final DailyQuotaService dailyQuota = mock(DailyQuotaService.class);
+    private final DeliveryStatusService deliveryStatusService = mock(DeliveryStatusService.class);
+    private final ChannelSender sender = mock(ChannelSender.class);
+    
+    private NotificationDispatcher dispatcher;
+    
+    @BeforeEach
+    void setUp() {
+        dispatcher = new NotificationDispatcher(queueService, senderRegistry, dailyQuota, deliveryStatusService);
+        ReflectionTestUtils.setField(dispatcher, "senderErrorDeferMs", 30_000L);
+        when(senderRegistry.sender(ChannelType.EMAIL)).thenReturn(Optional.of(sender));
+        when(sender.provider()).thenReturn("SMTP");
+        when(dailyQuota.acquire(eq(ChannelType.EMAIL), anyString(), anyInt()))
+                .thenAnswer(invocation -> invocation.getArgument(2));
+    }
+    
+    @Test
+    void senderExceptionDefersUnresolvedClaims() {
+        Notification sent = claimed();
+        Notification pending = claimed();
+        doAnswer(invocation -> {
+            sent.setStatus(NotificationStatus.SENT);
+            throw new IllegalStateException("connection reset");
+        }).when(sender).sendBatch(any());
+        
+        LocalDateTime before = LocalDateTime.now();
+        send(List.of(sent, pending));
+        
+        verify(deliveryStatusService).defer(eq(pending), argThat(at -> !at.isBefore(before.plusSeconds(30))));
+        verify(deliveryStatusService, never()).defer(eq(sent), any());
+    }
+    
+    @Test
+    void successfulSendDefersNothing() {
+        send(List.of(claimed(), claimed()));
+        
+        verify(deliveryStatusService, never()).defer(any(), any());
+    }
+    
+    @Test
+    void rowsOverDailyQuotaAreReleasedNotSent() {
+        Notification first = claimed();
+        Notification second = claimed();
+        when(dailyQuota.acquire(eq(ChannelType.EMAIL), anyString(), anyInt())).thenReturn(1);
+        
+        send(List.of(first, second));
+        
+        verify(queueService).release(List.of(second));
+        verify(sender).sendBatch(List.of(first));
+    }
+    
+    @Test
+    void missingProviderReleasesGroup() {
+        when(senderRegistry.sender(ChannelType.EMAIL)).thenReturn(Optional.empty());
+        List<Notification> group = List.of(claimed());
+        
+        send(group);
+        
+        verify(queueService).release(group);
+    }
+    
+    private void send(List<Notification> group) {
+        ReflectionTestUtils.invokeMethod(dispatcher, "send", ChannelType.EMAIL, group);
+    }
+    
+    private static Notification claimed() {
+        return Notification.builder()
+                .notificationId(UUID.randomUUID())
+                .channelType(ChannelType.EMAIL)
+                .status(NotificationStatus.SENDING)
+                .retryCount(0)
+                .maxRetries(5)
+                .build();
+    }
+}
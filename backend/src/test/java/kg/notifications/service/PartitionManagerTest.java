@@ -0,0 +1,174 @@
+package kg.notifications.service;
+
+import kg.notifications.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PartitionManagerTest {
+    
+    private static final String FAR_PAST = "FOR VALUES FROM ('2020-01-01 00:00:00') TO ('2020-02-01 00:00:00')";
+    
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final IdempotencyKeyRepository idempotencyKeyRepository = mock(IdempotencyKeyRepository.class);
+    private final List<String> executed = new ArrayList<>();
+    private final List<Object[]> partitions = new ArrayList<>();
+    
+    private PartitionManager manager;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        Connection con = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        when(con.createStatement()).thenReturn(st);
+        when(st.execute(anyString())).thenAnswer(invocation -> executed.add(invocation.getArgument(0)));
+        when(st.executeQuery(startsWith("SELECT pg_"))).thenAnswer(invocation -> rows(List.<Object[]>of(new Object[]{true})));
+        when(st.executeQuery(startsWith("SELECT c.relname"))).thenAnswer(invocation -> rows(partitions));
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(con));
+        
+        manager = new PartitionManager(jdbcTemplate, idempotencyKeyRepository);
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "interval", PartitionManager.Interval.MONTH);
+        ReflectionTestUtils.setField(manager, "premake", 2);
+        ReflectionTestUtils.setField(manager, "retentionAction", "DETACH");
+    }
+    
+    @Test
+    void createsCurrentAndPremadeMonthlyPartitions() {
+        manager.maintain();
+        
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        List<String> creates = executed.stream().filter(sql -> sql.startsWith("CREATE TABLE")).toList();
+        assertEquals(3, creates.size());
+        for (int i = 0; i < 3; i++) {
+            LocalDate from = month.plusMonths(i);
+            assertEquals(String.format("CREATE TABLE IF NOT EXISTS notifications_p%d_%02d PARTITION OF notifications " +
+                            "FOR VALUES FROM ('%s') TO ('%s')", from.getYear(), from.getMonthValue(), from, from.plusMonths(1)),
+                    creates.get(i));
+        }
+    }
+    
+    @Test
+    void keepsEverythingWithoutRetention() {
+        partitions.add(new Object[]{"notifications_p2020_01", FAR_PAST, false});
+        
+        manager.maintain();
+        
+        assertTrue(detaches().isEmpty());
+    }
+    
+    @Test
+    void detachesExpiredPartitionsConcurrently() {
+        ReflectionTestUtils.setField(manager, "retentionPeriods", 1);
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        partitions.add(new Object[]{"notifications_p2020_01", FAR_PAST, false});
+        partitions.add(new Object[]{"notifications_current", bound(month, month.plusMonths(1)), false});
+        // Ended exactly at the cutoff: the whole period before the previous one
+        partitions.add(new Object[]{"notifications_at_cutoff", bound(month.minusMonths(2), month.minusMonths(1)), false});
+        
+        manager.maintain();
+        
+        assertEquals(List.of(
+                "ALTER TABLE notifications DETACH PARTITION notifications_p2020_01 CONCURRENTLY",
+                "ALTER TABLE notifications DETACH PARTITION notifications_at_cutoff CONCURRENTLY"), detaches());
+        verify(idempotencyKeyRepository).deleteCreatedBefore(LocalDateTime.of(2020, 2, 1, 0, 0));
+        verify(idempotencyKeyRepository).deleteCreatedBefore(month.minusMonths(1).atStartOfDay());
+    }
+    
+    @Test
+    void dropActionDropsDetachedPartition() {
+        ReflectionTestUtils.setField(manager, "retentionPeriods", 1);
+        ReflectionTestUtils.setField(manager, "retentionAction", "DROP");
+        partitions.add(new Object[]{"notifications_p2020_01", FAR_PAST, false});
+        
+        manager.maintain();
+        
+        int detach = executed.indexOf("ALTER TABLE notifications DETACH PARTITION notifications_p2020_01 CONCURRENTLY");
+        assertTrue(detach >= 0);
+        assertEquals("DROP TABLE notifications_p2020_01", executed.get(detach + 1));
+    }
+    
+    @Test
+    void pendingDetachIsFinalizedBeforeOtherDetaches() {
+        ReflectionTestUtils.setField(manager, "retentionPeriods", 1);
+        partitions.add(new Object[]{"notifications_p2020_01", FAR_PAST, false});
+        partitions.add(new Object[]{"notifications_p2020_02",
+                "FOR VALUES FROM ('2020-02-01 00:00:00') TO ('2020-03-01 00:00:00')", true});
+        
+        manager.maintain();
+        
+        assertEquals(List.of(
+                "ALTER TABLE notifications DETACH PARTITION notifications_p2020_02 FINALIZE",
+                "ALTER TABLE notifications DETACH PARTITION notifications_p2020_01 CONCURRENTLY"), detaches());
+        verify(idempotencyKeyRepository).deleteCreatedBefore(LocalDateTime.of(2020, 3, 1, 0, 0));
+    }
+    
+    @Test
+    void pendingDetachIsFinalizedWithoutRetention() {
+        partitions.add(new Object[]{"notifications_p2020_01", FAR_PAST, true});
+        
+        manager.maintain();
+        
+        assertEquals(List.of("ALTER TABLE notifications DETACH PARTITION notifications_p2020_01 FINALIZE"), detaches());
+        verify(idempotencyKeyRepository, never()).deleteCreatedBefore(any());
+    }
+    
+    @Test
+    void skipsWhenAnotherReplicaHoldsTheLock() throws SQLException {
+        Connection con = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        when(con.createStatement()).thenReturn(st);
+        when(st.executeQuery(anyString())).thenAnswer(invocation -> rows(List.<Object[]>of(new Object[]{false})));
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(con));
+        
+        manager.maintain();
+        
+        verify(st, never()).execute(anyString());
+    }
+    
+    private List<String> detaches() {
+        return executed.stream().filter(sql -> sql.contains("DETACH")).toList();
+    }
+    
+    private static String bound(LocalDate from, LocalDate to) {
+        return "FOR VALUES FROM ('" + from + " 00:00:00') TO ('" + to + " 00:00:00')";
+    }
+    
+    private static ResultSet rows(List<Object[]> rows) throws SQLException {
+        Iterator<Object[]> it = rows.iterator();
+        Object[][] current = new Object[1][];
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenAnswer(invocation -> {
+            current[0] = it.hasNext() ? it.next() : null;
+            return current[0] != null;
+        });
+        when(rs.getString(anyInt())).thenAnswer(invocation -> (String) current[0][invocation.<Integer>getArgument(0) - 1]);
+        when(rs.getBoolean(anyInt())).thenAnswer(invocation -> (Boolean) current[0][invocation.<Integer>getArgument(0) - 1]);
+        return rs;
+    }
+}
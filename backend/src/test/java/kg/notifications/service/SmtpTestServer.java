@@ -0,0 +1,96 @@
+package kg.notifications.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal SMTP server for tests: accepts every command except RCPT to an address containing
+ * "reject", and counts connections and messages.
+ */
+final class SmtpTestServer implements AutoCloseable {
+    
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger messages = new AtomicInteger();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final ServerSocket serverSocket = new ServerSocket(0);
+    
+    SmtpTestServer() throws IOException {
+        Thread.ofVirtual().start(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    connections.incrementAndGet();
+                    Thread.ofVirtual().start(() -> handle(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+    }
+    
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+    
+    void dropAll() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropAll();
+    }
+    
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost ESMTP test");
+            boolean inData = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (inData) {
+                    if (line.equals(".")) {
+                        inData = false;
+                        messages.incrementAndGet();
+                        reply(out, "250 Ok");
+                    }
+                    continue;
+                }
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase(Locale.ROOT) : line;
+                switch (command) {
+                    case "DATA" -> {
+                        inData = true;
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    }
+                    case "RCPT" -> reply(out, line.contains("reject") ? "550 No such user" : "250 Ok");
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "250 Ok");
+                }
+            }
+        } catch (IOException e) {
+            // Client or test closed the connection
+        }
+    }
+    
+    private static void reply(OutputStream out, String text) throws IOException {
+        out.write((text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,146 @@
+package kg.notifications.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmtpTransportPoolTest {
+    
+    private SmtpTestServer server;
+    private JavaMailSenderImpl mailSender;
+    private SmtpTransportPool pool;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new SmtpTestServer();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(server.port());
+        // Spring Boot sets spring.mail.protocol, which defaults to smtp
+        mailSender.setProtocol("smtp");
+        
+        pool = new SmtpTransportPool(mailSender);
+        ReflectionTestUtils.setField(pool, "maxSize", 2);
+        ReflectionTestUtils.setField(pool, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 100);
+        ReflectionTestUtils.setField(pool, "validateAfterIdleMs", 60_000L);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMs", 200L);
+        pool.init();
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        pool.close();
+        server.close();
+    }
+    
+    @Test
+    void reusesOneConnectionForSequentialMessages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            sendOne();
+        }
+        
+        assertEquals(1, server.connections.get());
+        assertEquals(5, server.messages.get());
+        assertEquals(1, pool.idleCount());
+    }
+    
+    @Test
+    void replacesConnectionAfterMaxMessages() throws Exception {
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 2);
+        
+        for (int i = 0; i < 5; i++) {
+            sendOne();
+        }
+        
+        assertEquals(3, server.connections.get());
+        assertEquals(5, server.messages.get());
+    }
+    
+    @Test
+    void brokenConnectionIsClosedInsteadOfPooled() throws Exception {
+        SmtpTransportPool.PooledTransport transport = pool.borrow();
+        pool.release(transport, true);
+        assertEquals(0, pool.idleCount());
+        
+        sendOne();
+        
+        assertEquals(2, server.connections.get());
+    }
+    
+    @Test
+    void borrowTimesOutWhenAllConnectionsAreInUse() throws Exception {
+        SmtpTransportPool.PooledTransport first = pool.borrow();
+        SmtpTransportPool.PooledTransport second = pool.borrow();
+        
+        assertThrows(SmtpTransportPool.BorrowTimeoutException.class, pool::borrow);
+        
+        pool.release(first, false);
+        pool.release(pool.borrow(), false);
+        pool.release(second, false);
+        assertEquals(2, server.connections.get());
+    }
+    
+    @Test
+    void connectionDroppedByServerFailsHealthCheck() throws Exception {
+        ReflectionTestUtils.setField(pool, "validateAfterIdleMs", 0L);
+        sendOne();
+        server.dropAll();
+        
+        sendOne();
+        
+        assertEquals(2, server.connections.get());
+        assertEquals(2, server.messages.get());
+    }
+    
+    @Test
+    void evictsIdleConnections() throws Exception {
+        sendOne();
+        assertEquals(1, pool.idleCount());
+        
+        ReflectionTestUtils.setField(pool, "idleTimeoutMs", -1L);
+        pool.evictIdle();
+        
+        assertEquals(0, pool.idleCount());
+    }
+    
+    @Test
+    void exhaustionFollowsMessageCount() throws Exception {
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 1);
+        SmtpTransportPool.PooledTransport transport = pool.borrow();
+        assertFalse(pool.isExhausted(transport));
+        
+        transport.send(message());
+        
+        assertTrue(pool.isExhausted(transport));
+        pool.release(transport, false);
+        assertEquals(0, pool.idleCount());
+    }
+    
+    private void sendOne() throws MessagingException {
+        SmtpTransportPool.PooledTransport transport = pool.borrow();
+        transport.send(message());
+        pool.release(transport, false);
+    }
+    
+    private MimeMessage message() throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        message.setFrom(new InternetAddress("noreply@notification.local"));
+        message.setRecipients(MimeMessage.RecipientType.TO, "user@example.com");
+        message.setSubject("Test");
+        message.setText("Hello");
+        return message;
+    }
+}
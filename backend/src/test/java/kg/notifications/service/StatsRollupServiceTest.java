@@ -0,0 +1,133 @@
+package kg.notifications.service;
+
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class StatsRollupServiceTest {
+    
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 3, 10, 14, 0);
+    
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private StatsRollupService service;
+    
+    @BeforeEach
+    void setUp() {
+        service = new StatsRollupService(jdbcTemplate);
+        ReflectionTestUtils.setField(service, "backfillHours", 168);
+        ReflectionTestUtils.setField(service, "repairWindowHours", 26);
+    }
+    
+    @Test
+    void createdNotificationCountsAsCreatedAndPending() {
+        service.onStatusChange(event(HOUR.plusMinutes(5), ChannelType.EMAIL, null, NotificationStatus.PENDING, null));
+        
+        assertArrayEquals(row(HOUR, ChannelType.EMAIL, 1, 0, 0, 1, 0, 0, null), single(flush()));
+    }
+    
+    @Test
+    void statusChangeMovesOneBetweenBucketsOfTheCreationHour() {
+        LocalDateTime createdAt = HOUR.plusMinutes(59);
+        service.onStatusChange(event(createdAt, ChannelType.SMS, null, NotificationStatus.PENDING, null));
+        service.onStatusChange(event(createdAt, ChannelType.SMS, NotificationStatus.PENDING, NotificationStatus.SENDING, null));
+        service.onStatusChange(event(createdAt, ChannelType.SMS, NotificationStatus.SENDING, NotificationStatus.SENT, 1200L));
+        service.onStatusChange(event(createdAt, ChannelType.SMS, null, NotificationStatus.PENDING, null));
+        service.onStatusChange(event(createdAt, ChannelType.SMS, NotificationStatus.SENDING, NotificationStatus.SENT, 800L));
+        
+        // PENDING -> SENDING stays in the pending bucket
+        assertArrayEquals(row(HOUR, ChannelType.SMS, 2, 2, 0, 0, 0, 2000, 1000L), single(flush()));
+    }
+    
+    @Test
+    void keysByCreationHourAndChannel() {
+        service.onStatusChange(event(HOUR.plusMinutes(10), ChannelType.EMAIL, null, NotificationStatus.PENDING, null));
+        service.onStatusChange(event(HOUR.plusMinutes(70), ChannelType.EMAIL, null, NotificationStatus.PENDING, null));
+        service.onStatusChange(event(HOUR.plusMinutes(10), ChannelType.TELEGRAM, null, NotificationStatus.PENDING, null));
+        service.onStatusChange(event(HOUR.plusMinutes(20), ChannelType.EMAIL, NotificationStatus.SENDING, NotificationStatus.FAILED, null));
+        
+        List<Object[]> rows = flush();
+        rows.sort(Comparator.<Object[], String>comparing(r -> r[0].toString()).thenComparing(r -> (String) r[1]));
+        assertEquals(3, rows.size());
+        assertArrayEquals(row(HOUR, ChannelType.EMAIL, 1, 0, 1, 0, 0, 0, null), rows.get(0));
+        assertArrayEquals(row(HOUR, ChannelType.TELEGRAM, 1, 0, 0, 1, 0, 0, null), rows.get(1));
+        assertArrayEquals(row(HOUR.plusHours(1), ChannelType.EMAIL, 1, 0, 0, 1, 0, 0, null), rows.get(2));
+    }
+    
+    @Test
+    void flushSendsOnlyNewDeltas() {
+        service.onStatusChange(event(HOUR, ChannelType.EMAIL, NotificationStatus.SENDING, NotificationStatus.EXPIRED, null));
+        assertArrayEquals(row(HOUR, ChannelType.EMAIL, 0, 0, 0, -1, 1, 0, null), single(flush()));
+        
+        service.flush();
+        
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+    
+    @Test
+    void ignoresChangesWithinOneBucket() {
+        service.onStatusChange(event(HOUR, ChannelType.EMAIL, NotificationStatus.SENT, NotificationStatus.DELIVERED, null));
+        
+        service.flush();
+        
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+    
+    @Test
+    void repairFlushesThenRecomputesTheWindow() {
+        service.onStatusChange(event(HOUR, ChannelType.EMAIL, null, NotificationStatus.PENDING, null));
+        
+        service.repair();
+        
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        ArgumentCaptor<Object> since = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).update(anyString(), since.capture());
+        LocalDateTime expected = LocalDateTime.now().minusHours(26).withMinute(0).withSecond(0).withNano(0);
+        assertEquals(Timestamp.valueOf(expected), since.getValue());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Object[]> flush() {
+        service.flush();
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        return rows.getValue();
+    }
+    
+    private static Object[] single(List<Object[]> rows) {
+        assertEquals(1, rows.size(), () -> rows.stream().map(Arrays::toString).toList().toString());
+        return rows.get(0);
+    }
+    
+    private static Object[] row(LocalDateTime hour, ChannelType channel, long created, long sent, long failed,
+                                long pending, long expired, long deliverySum, Long avg) {
+        return new Object[]{Timestamp.valueOf(hour), channel.name(), created, sent, failed, pending, expired,
+                deliverySum, avg};
+    }
+    
+    private static NotificationStatusEvent event(LocalDateTime createdAt, ChannelType channel,
+                                                 NotificationStatus from, NotificationStatus to, Long deliveryTimeMs) {
+        return new NotificationStatusEvent(UUID.randomUUID(), channel, createdAt, from, to, deliveryTimeMs,
+                1, null, null);
+    }
+}
@@ -0,0 +1,221 @@
+package kg.notifications.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kg.notifications.entity.ChannelType;
+import kg.notifications.entity.NotificationStatus;
+import kg.notifications.event.NotificationStatusEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class WebhookDispatcherTest {
+    
+    private static final String SECRET = "test-secret";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> responses = new LinkedBlockingQueue<>();
+    
+    private HttpServer server;
+    private String url;
+    private WebhookDispatcher dispatcher;
+    
+    private record Received(String id, String timestamp, String signature, byte[] body) {
+    }
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hook", this::handle);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/hook";
+        
+        dispatcher = new WebhookDispatcher(mock(JdbcTemplate.class), objectMapper, meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "signingSecret", SECRET);
+        ReflectionTestUtils.setField(dispatcher, "statusNames", new String[]{"SENT", "FAILED"});
+        ReflectionTestUtils.setField(dispatcher, "lingerMs", 50L);
+        ReflectionTestUtils.setField(dispatcher, "maxBatchSize", 1);
+        ReflectionTestUtils.setField(dispatcher, "maxConnectionsPerHost", 4);
+        ReflectionTestUtils.setField(dispatcher, "connectTimeoutMs", 1_000L);
+        ReflectionTestUtils.setField(dispatcher, "requestTimeoutMs", 2_000L);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "backoffInitialMs", 20L);
+        ReflectionTestUtils.setField(dispatcher, "backoffMaxMs", 100L);
+        ReflectionTestUtils.setField(dispatcher, "maxPending", 1_000);
+        ReflectionTestUtils.setField(dispatcher, "defaultUrlCacheMs", 60_000L);
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        server.stop(0);
+    }
+    
+    @Test
+    void signsTimestampAndBody() throws Exception {
+        dispatcher.init();
+        UUID notificationId = UUID.randomUUID();
+        
+        dispatcher.onStatusChange(event(notificationId, NotificationStatus.SENT));
+        
+        Received request = next();
+        assertNotNull(request.id());
+        assertSigned(request);
+        JsonNode events = objectMapper.readTree(request.body()).get("events");
+        assertEquals(1, events.size());
+        assertEquals(notificationId.toString(), events.get(0).get("notificationId").asText());
+        assertEquals("SENT", events.get(0).get("status").asText());
+    }
+    
+    @Test
+    void leavesRequestUnsignedWithoutSecret() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "signingSecret", "");
+        dispatcher.init();
+        
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.FAILED));
+        
+        Received request = next();
+        assertNotNull(request.timestamp());
+        assertNull(request.signature());
+    }
+    
+    @Test
+    void skipsStatusesNotSubscribedTo() throws Exception {
+        dispatcher.init();
+        
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.SENDING));
+        
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void retriesServerErrorsWithTheSameId() throws Exception {
+        responses.add(503);
+        responses.add(429);
+        dispatcher.init();
+        
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.SENT));
+        
+        Received first = next();
+        Received second = next();
+        Received third = next();
+        assertEquals(first.id(), second.id());
+        assertEquals(first.id(), third.id());
+        // Each attempt is signed over its own timestamp
+        assertSigned(second);
+        assertSigned(third);
+        awaitCount(() -> meterRegistry.counter("notification.webhook.delivered").count(), 1);
+        assertEquals(2, meterRegistry.counter("notification.webhook.retried").count());
+    }
+    
+    @Test
+    void dropsAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            responses.add(500);
+        }
+        dispatcher.init();
+        
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.SENT));
+        
+        next();
+        next();
+        next();
+        awaitCount(() -> meterRegistry.counter("notification.webhook.dropped", "reason", "exhausted").count(), 1);
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void doesNotRetryClientErrors() throws Exception {
+        responses.add(400);
+        dispatcher.init();
+        
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.SENT));
+        
+        next();
+        awaitCount(() -> meterRegistry.counter("notification.webhook.dropped", "reason", "rejected").count(), 1);
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, meterRegistry.counter("notification.webhook.retried").count());
+    }
+    
+    @Test
+    void gathersEventsForOneEndpointUntilLingerExpires() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "maxBatchSize", 10);
+        dispatcher.init();
+        
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.SENT));
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.FAILED));
+        dispatcher.onStatusChange(event(UUID.randomUUID(), NotificationStatus.SENT));
+        
+        Received request = next();
+        assertEquals(3, objectMapper.readTree(request.body()).get("events").size());
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        received.add(new Received(
+                exchange.getRequestHeaders().getFirst(WebhookDispatcher.ID_HEADER),
+                exchange.getRequestHeaders().getFirst(WebhookDispatcher.TIMESTAMP_HEADER),
+                exchange.getRequestHeaders().getFirst(WebhookDispatcher.SIGNATURE_HEADER),
+                body));
+        Integer status = responses.poll();
+        exchange.sendResponseHeaders(status != null ? status : 200, -1);
+        exchange.close();
+    }
+    
+    private Received next() throws InterruptedException {
+        Received request = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request, "webhook was not posted");
+        return request;
+    }
+    
+    private static void assertSigned(Received request) throws Exception {
+        String payload = request.timestamp() + "." + new String(request.body(), StandardCharsets.UTF_8);
+        assertEquals("sha256=" + hmac(payload), request.signature());
+    }
+    
+    private static String hmac(String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static void awaitCount(DoubleSupplier count, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsDouble() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.getAsDouble());
+    }
+    
+    private NotificationStatusEvent event(UUID notificationId, NotificationStatus status) {
+        return new NotificationStatusEvent(notificationId, ChannelType.EMAIL, LocalDateTime.now(),
+                NotificationStatus.SENDING, status, 100L, 1, url, null);
+    }
+}
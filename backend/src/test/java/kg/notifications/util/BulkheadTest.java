@@ -0,0 +1,139 @@
+package kg.notifications.util;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadTest {
+    
+    private static final Runnable NOTHING = () -> {
+    };
+    
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void runsAtMostConcurrencyTasksAtOnce(boolean virtual) throws Exception {
+        Bulkhead bulkhead = bulkhead(virtual, 3, 100, 10_000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+        
+        for (int i = 0; i < 20; i++) {
+            bulkhead.submit(1, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+            }, NOTHING, done::countDown);
+        }
+        
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, maxRunning.get());
+        shutdown(bulkhead);
+    }
+    
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void queuedUnitsCountAgainstCapacityUntilStarted(boolean virtual) throws Exception {
+        Bulkhead bulkhead = bulkhead(virtual, 1, 10, 10_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        
+        bulkhead.submit(1, () -> {
+            started.countDown();
+            await(release);
+        }, NOTHING, done::countDown);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, bulkhead.queued());
+        assertEquals(1, bulkhead.active());
+        
+        bulkhead.submit(4, NOTHING, NOTHING, done::countDown);
+        assertTrue(bulkhead.hasCapacity());
+        bulkhead.submit(6, NOTHING, NOTHING, done::countDown);
+        assertEquals(10, bulkhead.queued());
+        assertFalse(bulkhead.hasCapacity());
+        
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, bulkhead.queued());
+        assertTrue(bulkhead.hasCapacity());
+        shutdown(bulkhead);
+    }
+    
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void taskWaitingPastQueueTimeoutGetsOnTimeoutInstead(boolean virtual) throws Exception {
+        Bulkhead bulkhead = bulkhead(virtual, 1, 10, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        
+        bulkhead.submit(1, () -> await(release), NOTHING, done::countDown);
+        bulkhead.submit(1, () -> ran.set(true), () -> timedOut.set(true), done::countDown);
+        sleep(150);
+        release.countDown();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+        assertTrue(timedOut.get());
+        assertEquals(0, bulkhead.active());
+        shutdown(bulkhead);
+    }
+    
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void timedOutTaskDoesNotLeakAPermit(boolean virtual) throws Exception {
+        Bulkhead bulkhead = bulkhead(virtual, 1, 10, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch first = new CountDownLatch(2);
+        
+        bulkhead.submit(1, () -> await(release), NOTHING, first::countDown);
+        bulkhead.submit(1, NOTHING, NOTHING, first::countDown);
+        sleep(150);
+        release.countDown();
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        
+        CountDownLatch second = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        bulkhead.submit(1, () -> ran.set(true), NOTHING, second::countDown);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        assertTrue(ran.get());
+        shutdown(bulkhead);
+    }
+    
+    private static Bulkhead bulkhead(boolean virtual, int concurrency, int capacity, long queueTimeoutMs) {
+        return virtual
+                ? Bulkhead.virtual("test", concurrency, capacity, queueTimeoutMs)
+                : Bulkhead.platform("test", concurrency, capacity, queueTimeoutMs, Executors.defaultThreadFactory());
+    }
+    
+    private static void shutdown(Bulkhead bulkhead) throws InterruptedException {
+        bulkhead.executor().shutdown();
+        assertTrue(bulkhead.executor().awaitTermination(5, TimeUnit.SECONDS));
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package kg.notifications.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledTemplateTest {
+    
+    @Test
+    void substitutesVariablesIgnoringWhitespaceInsideBraces() {
+        CompiledTemplate template = CompiledTemplate.compile("Здравствуйте, {{ name }}! Код: {{code}}");
+        
+        assertEquals("Здравствуйте, Айбек! Код: 1234", template.render(Map.of("name", "Айбек", "code", 1234)));
+        assertArrayEquals(new String[] {"name", "code"}, template.variables());
+    }
+    
+    @Test
+    void handlesVariablesAtEdgesAndAdjacentToEachOther() {
+        CompiledTemplate template = CompiledTemplate.compile("{{a}}{{b}}-{{a}}");
+        
+        assertEquals("xy-x", template.render(Map.of("a", "x", "b", "y")));
+    }
+    
+    @Test
+    void templateWithoutVariablesIsReturnedAsIs() {
+        CompiledTemplate template = CompiledTemplate.compile("Plain text");
+        
+        assertEquals("Plain text", template.render(null));
+        assertEquals(0, template.variables().length);
+    }
+    
+    @Test
+    void unclosedPlaceholderIsKeptAsLiteral() {
+        CompiledTemplate template = CompiledTemplate.compile("Hello {{name}}, total {{sum");
+        
+        assertEquals("Hello Bob, total {{sum", template.render(Map.of("name", "Bob")));
+        assertArrayEquals(new String[] {"name"}, template.variables());
+    }
+    
+    @Test
+    void emptyPlaceholderIsKeptAsLiteral() {
+        CompiledTemplate template = CompiledTemplate.compile("a {{}} b {{  }} {{x}}");
+        
+        assertEquals("a {{}} b {{  }} 1", template.render(Map.of("x", 1)));
+    }
+    
+    @Test
+    void singleBracesAreNotPlaceholders() {
+        CompiledTemplate template = CompiledTemplate.compile("{name} } {{name}}");
+        
+        assertEquals("{name} } N", template.render(Map.of("name", "N")));
+    }
+    
+    @Test
+    void valuesAreInsertedVerbatimAndNotExpandedAgain() {
+        CompiledTemplate template = CompiledTemplate.compile("<p>{{body}}</p>");
+        
+        assertEquals("<p><b>{{body}}</b> & more</p>", template.render(Map.of("body", "<b>{{body}}</b> & more")));
+    }
+    
+    @Test
+    void missingVariableIsRejected() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{name}}, {{code}}");
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> template.render(Map.of("name", "Bob")));
+        assertTrue(e.getMessage().contains("code"));
+        assertThrows(IllegalArgumentException.class, () -> template.render(null));
+    }
+    
+    @Test
+    void largeRenderDoesNotAffectLaterOnes() {
+        CompiledTemplate template = CompiledTemplate.compile("[{{v}}]");
+        String big = "x".repeat(100_000);
+        
+        assertEquals("[" + big + "]", template.render(Map.of("v", big)));
+        assertEquals("[y]", template.render(Map.of("v", "y")));
+    }
+}
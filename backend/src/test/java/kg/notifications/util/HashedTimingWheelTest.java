@@ -0,0 +1,79 @@
+package kg.notifications.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+    
+    private final List<String> fired = new ArrayList<>();
+    
+    @Test
+    void deadlineBetweenTicksNeverFiresEarly() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(1000, 8, 10_000);
+        wheel.schedule("a", 12_900);
+        
+        wheel.advance(12_000, fired::add);
+        assertTrue(fired.isEmpty());
+        
+        wheel.advance(12_999, fired::add);
+        assertTrue(fired.isEmpty());
+        
+        wheel.advance(13_000, fired::add);
+        assertEquals(List.of("a"), fired);
+    }
+    
+    @Test
+    void deadlineOnTickBoundaryFiresOnThatTick() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(1000, 8, 10_000);
+        wheel.schedule("a", 12_000);
+        
+        wheel.advance(11_999, fired::add);
+        assertTrue(fired.isEmpty());
+        
+        wheel.advance(12_000, fired::add);
+        assertEquals(List.of("a"), fired);
+    }
+    
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(1000, 8, 10_500);
+        wheel.schedule("late", 5_000);
+        
+        wheel.advance(10_999, fired::add);
+        assertTrue(fired.isEmpty());
+        
+        wheel.advance(11_000, fired::add);
+        assertEquals(List.of("late"), fired);
+    }
+    
+    @Test
+    void timerBeyondOneRevolutionWaitsForItsRound() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 4, 0);
+        assertEquals(400, wheel.spanMillis());
+        wheel.schedule("near", 150);
+        wheel.schedule("far", 1_050);
+        
+        wheel.advance(200, fired::add);
+        assertEquals(List.of("near"), fired);
+        
+        wheel.advance(1_000, fired::add);
+        assertEquals(List.of("near"), fired);
+        assertEquals(1, wheel.size());
+        
+        assertEquals(1, wheel.advance(1_100, fired::add));
+        assertEquals(List.of("near", "far"), fired);
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void wheelSizeIsRoundedUpToPowerOfTwo() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 5, 0);
+        
+        assertEquals(80, wheel.spanMillis());
+    }
+}
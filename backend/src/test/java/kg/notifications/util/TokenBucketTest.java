@@ -0,0 +1,87 @@
+package kg.notifications.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+    
+    private static final long SECOND = 1_000_000_000L;
+    private static final long INTERVAL = SECOND / 10;
+    private static final long START = 5 * SECOND;
+    
+    @Test
+    void fullBucketGrantsExactlyCapacity() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.tryAcquire(1, START));
+        }
+        assertEquals(INTERVAL, bucket.tryAcquire(1, START));
+        assertEquals(10, bucket.drainAcquired());
+    }
+    
+    @Test
+    void requestOfExactlyCapacityFitsOnlyIntoFullBucket() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        
+        assertEquals(0, bucket.tryAcquire(10, START));
+        assertEquals(SECOND, bucket.tryAcquire(10, START));
+        assertEquals(0, bucket.tryAcquire(10, START + SECOND));
+    }
+    
+    @Test
+    void requestLargerThanCapacityNeverFits() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        
+        assertEquals(INTERVAL, bucket.tryAcquire(11, START));
+        assertEquals(INTERVAL, bucket.tryAcquire(11, START + 3600 * SECOND));
+        assertEquals(0, bucket.drainAcquired());
+    }
+    
+    @Test
+    void refillsOnePermitPerInterval() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        assertEquals(0, bucket.tryAcquire(10, START));
+        
+        assertEquals(INTERVAL / 2, bucket.tryAcquire(1, START + INTERVAL / 2));
+        assertEquals(0, bucket.tryAcquire(1, START + INTERVAL));
+        assertEquals(INTERVAL, bucket.tryAcquire(1, START + INTERVAL));
+        
+        assertEquals(0, bucket.tryAcquire(3, START + 4 * INTERVAL));
+        assertTrue(bucket.tryAcquire(1, START + 4 * INTERVAL) > 0);
+    }
+    
+    @Test
+    void idleTimeDoesNotAccumulateBeyondCapacity() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        assertEquals(0, bucket.tryAcquire(10, START));
+        
+        long later = START + 60 * SECOND;
+        assertEquals(0, bucket.tryAcquire(10, later));
+        assertEquals(INTERVAL, bucket.tryAcquire(1, later));
+    }
+    
+    @Test
+    void chargeBeyondEmptyBucketIsKeptAsDebt() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        
+        bucket.charge(30, START);
+        
+        assertEquals(2 * SECOND + INTERVAL, bucket.tryAcquire(1, START));
+        assertEquals(0, bucket.tryAcquire(1, START + 2 * SECOND + INTERVAL));
+        assertEquals(1, bucket.drainAcquired());
+    }
+    
+    @Test
+    void reconfigureKeepsUsageAndAppliesNewCapacity() {
+        TokenBucket bucket = new TokenBucket(10, SECOND);
+        assertEquals(0, bucket.tryAcquire(5, START));
+        
+        bucket.configure(20, SECOND);
+        
+        assertEquals(20, bucket.capacity());
+        assertEquals(0, bucket.tryAcquire(1, START));
+    }
+}
@@ -58,25 +58,28 @@ CREATE INDEX IF NOT EXISTS idx_api_clients_prefix ON api_clients(api_key_prefix)
 
 -- =====================================================
 -- Table: channel_configs
--- Stores channel provider configurations
+-- Stores channel provider configurations; a channel may have several
+-- providers, tried in priority order (lower first) while healthy
 -- =====================================================
 CREATE TABLE IF NOT EXISTS channel_configs (
     config_id SERIAL PRIMARY KEY,
-    channel_name VARCHAR(20) NOT NULL UNIQUE,
+    channel_name VARCHAR(20) NOT NULL,
     provider_name VARCHAR(50) NOT NULL,
     credentials BYTEA NOT NULL,
     settings JSONB NULL,
     is_enabled BOOLEAN NOT NULL DEFAULT FALSE,
     priority INTEGER NOT NULL DEFAULT 0,
     daily_limit INTEGER NULL,
-    daily_sent_count INTEGER NOT NULL DEFAULT 0,
+    daily_sent_count INTEGER NOT NULL DEFAULT 0,   -- sends reserved on daily_count_date, by all replicas
+    daily_count_date DATE NULL,
     last_health_check TIMESTAMP NULL,
     health_status VARCHAR(20) DEFAULT 'UNKNOWN',
     created_at TIMESTAMP NOT NULL DEFAULT NOW(),
     updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
     
     CONSTRAINT chk_channel_name CHECK (channel_name IN ('EMAIL', 'TELEGRAM', 'SMS', 'WHATSAPP')),
-    CONSTRAINT chk_health_status CHECK (health_status IN ('UNKNOWN', 'HEALTHY', 'UNHEALTHY', 'DEGRADED'))
+    CONSTRAINT chk_health_status CHECK (health_status IN ('UNKNOWN', 'HEALTHY', 'UNHEALTHY', 'DEGRADED')),
+    CONSTRAINT uq_channel_configs_provider UNIQUE (channel_name, provider_name)
 );
 
 -- =====================================================
@@ -104,10 +107,14 @@ CREATE INDEX IF NOT EXISTS idx_templates_active ON message_templates(is_active)
 
 -- =====================================================
 -- Table: notifications
--- Stores all notification requests and their status
+-- Stores all notification requests and their status.
+-- Range-partitioned by created_at; partitions are created
+-- ahead and retired by PartitionManager
+-- (notification.partitions.*). The ones below cover the
+-- first months so inserts work before the app has started.
 -- =====================================================
 CREATE TABLE IF NOT EXISTS notifications (
-    notification_id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    notification_id UUID NOT NULL DEFAULT uuid_generate_v4(),
     client_id INTEGER NOT NULL REFERENCES api_clients(client_id),
     channel_type VARCHAR(20) NOT NULL,
     recipient VARCHAR(255) NOT NULL,
@@ -121,7 +128,7 @@ CREATE TABLE IF NOT EXISTS notifications (
     error_message TEXT NULL,
     error_code VARCHAR(50) NULL,
     provider_message_id VARCHAR(255) NULL,
-    idempotency_key VARCHAR(255) NULL UNIQUE,
+    idempotency_key VARCHAR(255) NULL,
     callback_url VARCHAR(500) NULL,
     metadata JSONB NULL,
     created_at TIMESTAMP NOT NULL DEFAULT NOW(),
@@ -129,17 +136,50 @@ CREATE TABLE IF NOT EXISTS notifications (
     sent_at TIMESTAMP NULL,
     expires_at TIMESTAMP NULL,
     
+    -- The partition key must be part of every unique constraint
+    PRIMARY KEY (notification_id, created_at),
     CONSTRAINT chk_notifications_channel CHECK (channel_type IN ('EMAIL', 'TELEGRAM', 'SMS', 'WHATSAPP')),
     CONSTRAINT chk_notifications_status CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'DELIVERED', 'FAILED', 'EXPIRED')),
     CONSTRAINT chk_notifications_priority CHECK (priority IN ('HIGH', 'NORMAL', 'LOW'))
-);
+) PARTITION BY RANGE (created_at);
+
+DO $$
+DECLARE
+    month_start DATE;
+BEGIN
+    FOR i IN 0..3 LOOP
+        month_start := (date_trunc('month', NOW()) + make_interval(months => i))::date;
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF notifications FOR VALUES FROM (%L) TO (%L)',
+            'notifications_p' || to_char(month_start, 'YYYY_MM'),
+            month_start,
+            (month_start + INTERVAL '1 month')::date);
+    END LOOP;
+END $$;
 
-CREATE INDEX IF NOT EXISTS idx_notifications_status ON notifications(status);
+-- Keyset pagination: (filter, created_at, notification_id) serves each listing newest first
+CREATE INDEX IF NOT EXISTS idx_notifications_status ON notifications(status, created_at DESC, notification_id DESC);
 CREATE INDEX IF NOT EXISTS idx_notifications_client_id ON notifications(client_id);
-CREATE INDEX IF NOT EXISTS idx_notifications_created_at ON notifications(created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_notifications_created_at ON notifications(created_at DESC, notification_id DESC);
 CREATE INDEX IF NOT EXISTS idx_notifications_next_retry ON notifications(next_retry_at) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_notifications_expiry ON notifications(expires_at) WHERE status IN ('PENDING', 'SENDING');
 CREATE INDEX IF NOT EXISTS idx_notifications_idempotency ON notifications(idempotency_key) WHERE idempotency_key IS NOT NULL;
-CREATE INDEX IF NOT EXISTS idx_notifications_channel ON notifications(channel_type);
+CREATE INDEX IF NOT EXISTS idx_notifications_channel ON notifications(channel_type, created_at DESC, notification_id DESC);
+CREATE INDEX IF NOT EXISTS idx_notifications_dispatch ON notifications(priority, created_at) WHERE status IN ('PENDING', 'SENDING');
+
+-- =====================================================
+-- Table: notification_idempotency_keys
+-- Global uniqueness of idempotency keys, which a unique
+-- index on the partitioned notifications table cannot
+-- provide. Rows are removed with their partition.
+-- =====================================================
+CREATE TABLE IF NOT EXISTS notification_idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    notification_id UUID NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON notification_idempotency_keys(created_at);
 
 -- =====================================================
 -- Table: retry_queue
@@ -147,7 +187,7 @@ CREATE INDEX IF NOT EXISTS idx_notifications_channel ON notifications(channel_ty
 -- =====================================================
 CREATE TABLE IF NOT EXISTS retry_queue (
     queue_id BIGSERIAL PRIMARY KEY,
-    notification_id UUID NOT NULL REFERENCES notifications(notification_id),
+    notification_id UUID NOT NULL, -- no FK: notifications is partitioned and its partitions are dropped
     retry_attempt INTEGER NOT NULL DEFAULT 1,
     scheduled_at TIMESTAMP NOT NULL,
     processed_at TIMESTAMP NULL,
@@ -178,29 +218,49 @@ CREATE TABLE IF NOT EXISTS audit_log (
 );
 
 CREATE INDEX IF NOT EXISTS idx_audit_log_admin ON audit_log(admin_id);
-CREATE INDEX IF NOT EXISTS idx_audit_log_created ON audit_log(created_at DESC);
-CREATE INDEX IF NOT EXISTS idx_audit_log_action ON audit_log(action_type);
+CREATE INDEX IF NOT EXISTS idx_audit_log_created ON audit_log(created_at DESC, log_id DESC);
+CREATE INDEX IF NOT EXISTS idx_audit_log_action ON audit_log(action_type, created_at DESC, log_id DESC);
 CREATE INDEX IF NOT EXISTS idx_audit_log_entity ON audit_log(entity_type, entity_id);
+CREATE INDEX IF NOT EXISTS idx_audit_log_entity_type ON audit_log(entity_type, created_at DESC, log_id DESC);
 
 -- =====================================================
 -- Table: notification_stats_hourly
--- Aggregated hourly statistics for dashboard
+-- Aggregated hourly statistics for dashboard, keyed by the
+-- hour notifications were created. Maintained incrementally
+-- by StatsRollupService and periodically recomputed.
 -- =====================================================
 CREATE TABLE IF NOT EXISTS notification_stats_hourly (
     stat_id BIGSERIAL PRIMARY KEY,
     stat_hour TIMESTAMP NOT NULL,
     channel_type VARCHAR(20) NOT NULL,
+    total_created INTEGER NOT NULL DEFAULT 0,
     total_sent INTEGER NOT NULL DEFAULT 0,
     total_failed INTEGER NOT NULL DEFAULT 0,
     total_pending INTEGER NOT NULL DEFAULT 0,
+    total_expired INTEGER NOT NULL DEFAULT 0,
+    delivery_time_sum_ms BIGINT NOT NULL DEFAULT 0,
     avg_delivery_time_ms BIGINT NULL,
     created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
     
     CONSTRAINT uq_stats_hour_channel UNIQUE (stat_hour, channel_type)
 );
 
 CREATE INDEX IF NOT EXISTS idx_stats_hour ON notification_stats_hourly(stat_hour DESC);
 
+-- =====================================================
+-- Table: rate_limit_windows
+-- Per-client request counts shared between replicas
+-- (notification.rate-limit.mode = postgres)
+-- =====================================================
+CREATE TABLE IF NOT EXISTS rate_limit_windows (
+    client_id INTEGER NOT NULL REFERENCES api_clients(client_id) ON DELETE CASCADE,
+    window_start TIMESTAMP NOT NULL,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    
+    PRIMARY KEY (client_id, window_start)
+);
+
 -- =====================================================
 -- Function: Update updated_at timestamp
 -- =====================================================
@@ -245,9 +305,9 @@ INSERT INTO channel_configs (channel_name, provider_name, credentials, settings,
 VALUES 
     ('EMAIL', 'SMTP', E'\\x', '{"host": "smtp.gmail.com", "port": 587, "use_tls": true}'::jsonb, false, 1),
     ('TELEGRAM', 'Telegram Bot API', E'\\x', '{"parse_mode": "HTML"}'::jsonb, false, 2),
-    ('SMS', 'Default SMS Provider', E'\\x', '{}'::jsonb, false, 3),
+    ('SMS', 'SMS Gateway', E'\\x', '{}'::jsonb, false, 3),
     ('WHATSAPP', 'WhatsApp Business API', E'\\x', '{}'::jsonb, false, 4)
-ON CONFLICT (channel_name) DO NOTHING;
+ON CONFLICT (channel_name, provider_name) DO NOTHING;
 
 -- =====================================================
 -- Insert default API client for testing
@@ -257,7 +317,7 @@ INSERT INTO api_clients (client_name, client_description, api_key_hash, api_key_
 VALUES (
     'Test Client',
     'Default test client for development',
-    'a665a45920422f9d417e4867efdc4fb8a04a1f3fff1fa07e998e86f7f7a27ae3',  -- SHA-256 of '123'
+    'a6b023eb790f18c5ec66527e682f609c2cbbb2852af470ad3cd1ccc9880c16ac',  -- SHA-256 of 'ns_test_123'
     'ns_test_',
     true,
     1000
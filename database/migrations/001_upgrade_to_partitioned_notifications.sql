@@ -0,0 +1,178 @@
+-- =====================================================
+-- Upgrade: databases created from the original init.sql
+-- to the current schema (partitioned notifications,
+-- idempotency key table, rate limit windows, daily quota
+-- date, incremental stats columns, multi-provider
+-- channel configs).
+--
+-- Run once, with the backend stopped:
+--   psql -v ON_ERROR_STOP=1 -d notification_db \
+--        -f database/migrations/001_upgrade_to_partitioned_notifications.sql
+--
+-- Everything runs in one transaction. notifications is
+-- rebuilt, so the table is locked for the duration of the
+-- copy; plan a maintenance window for large tables.
+-- =====================================================
+
+BEGIN;
+
+-- =====================================================
+-- channel_configs: several providers per channel, shared daily counter
+-- =====================================================
+ALTER TABLE channel_configs ADD COLUMN IF NOT EXISTS daily_count_date DATE NULL;
+ALTER TABLE channel_configs DROP CONSTRAINT IF EXISTS channel_configs_channel_name_key;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uq_channel_configs_provider') THEN
+        ALTER TABLE channel_configs
+            ADD CONSTRAINT uq_channel_configs_provider UNIQUE (channel_name, provider_name);
+    END IF;
+END $$;
+
+-- SmsService registers its provider as 'SMS Gateway'
+UPDATE channel_configs SET provider_name = 'SMS Gateway'
+WHERE channel_name = 'SMS' AND provider_name = 'Default SMS Provider';
+
+-- =====================================================
+-- notification_stats_hourly: incremental rollup columns
+-- =====================================================
+ALTER TABLE notification_stats_hourly ADD COLUMN IF NOT EXISTS total_created INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE notification_stats_hourly ADD COLUMN IF NOT EXISTS total_expired INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE notification_stats_hourly ADD COLUMN IF NOT EXISTS delivery_time_sum_ms BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE notification_stats_hourly ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT NOW();
+
+UPDATE notification_stats_hourly
+SET delivery_time_sum_ms = COALESCE(avg_delivery_time_ms, 0) * total_sent
+WHERE delivery_time_sum_ms = 0;
+
+-- =====================================================
+-- rate_limit_windows
+-- =====================================================
+CREATE TABLE IF NOT EXISTS rate_limit_windows (
+    client_id INTEGER NOT NULL REFERENCES api_clients(client_id) ON DELETE CASCADE,
+    window_start TIMESTAMP NOT NULL,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    
+    PRIMARY KEY (client_id, window_start)
+);
+
+-- =====================================================
+-- audit_log: keyset pagination indexes
+-- =====================================================
+DROP INDEX IF EXISTS idx_audit_log_created;
+DROP INDEX IF EXISTS idx_audit_log_action;
+CREATE INDEX idx_audit_log_created ON audit_log(created_at DESC, log_id DESC);
+CREATE INDEX idx_audit_log_action ON audit_log(action_type, created_at DESC, log_id DESC);
+CREATE INDEX IF NOT EXISTS idx_audit_log_entity_type ON audit_log(entity_type, created_at DESC, log_id DESC);
+
+-- =====================================================
+-- notifications: rebuild as a range-partitioned table
+-- =====================================================
+
+-- Partitions cannot be referenced by foreign keys
+ALTER TABLE retry_queue DROP CONSTRAINT IF EXISTS retry_queue_notification_id_fkey;
+
+ALTER TABLE notifications RENAME TO notifications_old;
+ALTER TABLE notifications_old DROP CONSTRAINT IF EXISTS notifications_pkey;
+ALTER TABLE notifications_old DROP CONSTRAINT IF EXISTS notifications_idempotency_key_key;
+DROP TRIGGER IF EXISTS update_notifications_updated_at ON notifications_old;
+DROP INDEX IF EXISTS idx_notifications_status;
+DROP INDEX IF EXISTS idx_notifications_client_id;
+DROP INDEX IF EXISTS idx_notifications_created_at;
+DROP INDEX IF EXISTS idx_notifications_next_retry;
+DROP INDEX IF EXISTS idx_notifications_idempotency;
+DROP INDEX IF EXISTS idx_notifications_channel;
+
+CREATE TABLE notifications (
+    notification_id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    client_id INTEGER NOT NULL REFERENCES api_clients(client_id),
+    channel_type VARCHAR(20) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(500) NULL,
+    message_body TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    priority VARCHAR(10) NOT NULL DEFAULT 'NORMAL',
+    retry_count INTEGER NOT NULL DEFAULT 0,
+    max_retries INTEGER NOT NULL DEFAULT 5,
+    next_retry_at TIMESTAMP NULL,
+    error_message TEXT NULL,
+    error_code VARCHAR(50) NULL,
+    provider_message_id VARCHAR(255) NULL,
+    idempotency_key VARCHAR(255) NULL,
+    callback_url VARCHAR(500) NULL,
+    metadata JSONB NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    sent_at TIMESTAMP NULL,
+    expires_at TIMESTAMP NULL,
+    
+    PRIMARY KEY (notification_id, created_at),
+    CONSTRAINT chk_notifications_channel CHECK (channel_type IN ('EMAIL', 'TELEGRAM', 'SMS', 'WHATSAPP')),
+    CONSTRAINT chk_notifications_status CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'DELIVERED', 'FAILED', 'EXPIRED')),
+    CONSTRAINT chk_notifications_priority CHECK (priority IN ('HIGH', 'NORMAL', 'LOW'))
+) PARTITION BY RANGE (created_at);
+
+-- Monthly partitions from the oldest existing row to three months ahead, named as
+-- PartitionManager names them with the default MONTH interval
+DO $$
+DECLARE
+    month_start DATE;
+    last_month DATE := (date_trunc('month', NOW()) + INTERVAL '3 months')::date;
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(created_at)), date_trunc('month', NOW()))::date
+    INTO month_start FROM notifications_old;
+    WHILE month_start <= last_month LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF notifications FOR VALUES FROM (%L) TO (%L)',
+            'notifications_p' || to_char(month_start, 'YYYY_MM'),
+            month_start,
+            (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO notifications (notification_id, client_id, channel_type, recipient, subject, message_body,
+                           status, priority, retry_count, max_retries, next_retry_at, error_message,
+                           error_code, provider_message_id, idempotency_key, callback_url, metadata,
+                           created_at, updated_at, sent_at, expires_at)
+SELECT notification_id, client_id, channel_type, recipient, subject, message_body,
+       status, priority, retry_count, max_retries, next_retry_at, error_message,
+       error_code, provider_message_id, idempotency_key, callback_url, metadata,
+       created_at, updated_at, sent_at, expires_at
+FROM notifications_old;
+
+DROP TABLE notifications_old;
+
+CREATE INDEX idx_notifications_status ON notifications(status, created_at DESC, notification_id DESC);
+CREATE INDEX idx_notifications_client_id ON notifications(client_id);
+CREATE INDEX idx_notifications_created_at ON notifications(created_at DESC, notification_id DESC);
+CREATE INDEX idx_notifications_next_retry ON notifications(next_retry_at) WHERE status = 'PENDING';
+CREATE INDEX idx_notifications_expiry ON notifications(expires_at) WHERE status IN ('PENDING', 'SENDING');
+CREATE INDEX idx_notifications_idempotency ON notifications(idempotency_key) WHERE idempotency_key IS NOT NULL;
+CREATE INDEX idx_notifications_channel ON notifications(channel_type, created_at DESC, notification_id DESC);
+CREATE INDEX idx_notifications_dispatch ON notifications(priority, created_at) WHERE status IN ('PENDING', 'SENDING');
+
+CREATE TRIGGER update_notifications_updated_at
+    BEFORE UPDATE ON notifications
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- =====================================================
+-- notification_idempotency_keys: global key uniqueness
+-- =====================================================
+CREATE TABLE IF NOT EXISTS notification_idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    notification_id UUID NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON notification_idempotency_keys(created_at);
+
+-- Keys were unique in the old table, so no conflicts are expected
+INSERT INTO notification_idempotency_keys (idempotency_key, notification_id, created_at)
+SELECT idempotency_key, notification_id, created_at
+FROM notifications
+WHERE idempotency_key IS NOT NULL
+ON CONFLICT (idempotency_key) DO NOTHING;
+
+COMMIT;
@@ -51,6 +51,7 @@ export interface DashboardStats {
   totalFailed: number;
   totalPending: number;
   successRate: number;
+  avgDeliveryTimeMs?: number;
   byChannel: Record<string, number>;
   byStatus: Record<string, number>;
   hourlyStats: { hour: string; count: number }[];
@@ -58,6 +59,17 @@ export interface DashboardStats {
   generatedAt: string;
 }
 
+// channel -> counter (ACCEPTED, SENT, FAILED, RETRIED, EXPIRED) -> count
+export type LiveCounters = Record<string, Record<string, number>>;
+
+export interface LiveStats {
+  at: string;
+  delta: LiveCounters;
+  lastMinute: LiveCounters;
+  window: LiveCounters;
+  windowStart: string;
+}
+
 export interface AuditLogDto {
   logId: number;
   adminId: number;
@@ -89,9 +101,19 @@ export interface Page<T> {
   last: boolean;
 }
 
+export interface CursorPage<T> {
+  content: T[];
+  size: number;
+  nextCursor: string | null;
+  prevCursor: string | null;
+  approximateTotal: number | null;
+}
+
 // API calls
-export const sendNotification = (data: SendNotificationRequest) =>
-  api.post<ApiResponse<{ notificationId: string; status: string; createdAt: string }>>('/send', data);
+export const sendNotification = (data: SendNotificationRequest, apiKey: string) =>
+  api.post<ApiResponse<{ notificationId: string; status: string; createdAt: string }>>('/send', data, {
+    headers: { 'X-API-Key': apiKey },
+  });
 
 export const getNotificationStatus = (id: string) =>
   api.get<ApiResponse<NotificationDto>>(`/status/${id}`);
@@ -103,15 +125,36 @@ export const getNotifications = (page = 0, size = 20, status?: string, channel?:
   return api.get<ApiResponse<Page<NotificationDto>>>(`/admin/notifications?${params}`);
 };
 
+export const getNotificationsByCursor = (cursor?: string, size = 20, status?: string, channel?: string) => {
+  const params = new URLSearchParams({ size: String(size), includeTotal: String(!cursor) });
+  if (cursor) params.append('cursor', cursor);
+  if (status) params.append('status', status);
+  if (channel) params.append('channel', channel);
+  return api.get<ApiResponse<CursorPage<NotificationDto>>>(`/admin/notifications/cursor?${params}`);
+};
+
 export const retryNotification = (id: string) =>
   api.post<ApiResponse<NotificationDto>>(`/admin/notifications/${id}/retry`);
 
 export const getDashboardStats = () =>
   api.get<ApiResponse<DashboardStats>>('/admin/stats/dashboard');
 
+// Pushed by the server every second; EventSource reconnects on its own
+export const subscribeLiveStats = (onStats: (stats: LiveStats) => void) => {
+  const source = new EventSource(`${API_BASE}/admin/stats/stream`);
+  source.addEventListener('stats', (event) => onStats(JSON.parse((event as MessageEvent).data)));
+  return source;
+};
+
 export const getAuditLogs = (page = 0, size = 50) =>
   api.get<ApiResponse<Page<AuditLogDto>>>(`/admin/audit?page=${page}&size=${size}`);
 
+export const getAuditLogsByCursor = (cursor?: string, size = 50) => {
+  const params = new URLSearchParams({ size: String(size), includeTotal: String(!cursor) });
+  if (cursor) params.append('cursor', cursor);
+  return api.get<ApiResponse<CursorPage<AuditLogDto>>>(`/admin/audit/cursor?${params}`);
+};
+
 export const getHealth = () =>
   api.get<ApiResponse<{ status: string; service: string; version: string }>>('/health');
 
@@ -1,13 +1,19 @@
 import { useState } from 'react';
 import { useQuery } from '@tanstack/react-query';
-import { getAuditLogs, AuditLogDto } from '../api';
+import { getAuditLogsByCursor, AuditLogDto } from '../api';
 
 function AuditLogs() {
-  const [page, setPage] = useState(0);
+  const [cursor, setCursor] = useState<string | undefined>();
+  const [total, setTotal] = useState<number | null>(null);
 
   const { data, isLoading, error } = useQuery({
-    queryKey: ['audit-logs', page],
-    queryFn: () => getAuditLogs(page, 50).then((res) => res.data.data),
+    queryKey: ['audit-logs', cursor],
+    queryFn: () =>
+      getAuditLogsByCursor(cursor, 50).then((res) => {
+        // The estimate is only requested for the first page
+        if (res.data.data.approximateTotal != null) setTotal(res.data.data.approximateTotal);
+        return res.data.data;
+      }),
   });
 
   if (isLoading) {
@@ -27,14 +33,13 @@ function AuditLogs() {
   }
 
   const logs = data?.content || [];
-  const totalPages = data?.totalPages || 0;
 
   return (
     <div>
       <header className="page-header">
         <h2>📝 Журнал аудита</h2>
         <p style={{ color: 'var(--text-secondary)', marginTop: 5 }}>
-          История всех действий в системе. Всего записей: {data?.totalElements || 0}
+          История всех действий в системе. Всего записей: ~{total ?? 0}
         </p>
       </header>
 
@@ -113,26 +118,17 @@ function AuditLogs() {
         </div>
 
         {/* Pagination */}
-        {totalPages > 1 && (
+        {(data?.prevCursor || data?.nextCursor) && (
           <div className="pagination">
-            <button onClick={() => setPage(0)} disabled={page === 0}>
+            <button onClick={() => setCursor(undefined)} disabled={!cursor}>
               ⏮️ Начало
             </button>
-            <button onClick={() => setPage((p) => Math.max(0, p - 1))} disabled={page === 0}>
+            <button onClick={() => setCursor(data?.prevCursor || undefined)} disabled={!data?.prevCursor}>
               ◀️ Назад
             </button>
-            <span style={{ padding: '8px 16px' }}>
-              Страница {page + 1} из {totalPages}
-            </span>
-            <button
-              onClick={() => setPage((p) => Math.min(totalPages - 1, p + 1))}
-              disabled={page >= totalPages - 1}
-            >
+            <button onClick={() => setCursor(data?.nextCursor || undefined)} disabled={!data?.nextCursor}>
               Вперед ▶️
             </button>
-            <button onClick={() => setPage(totalPages - 1)} disabled={page >= totalPages - 1}>
-              Конец ⏭️
-            </button>
           </div>
         )}
       </div>
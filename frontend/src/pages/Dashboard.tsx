@@ -1,13 +1,69 @@
-import { useQuery } from '@tanstack/react-query';
-import { getDashboardStats } from '../api';
+import { useEffect, useState } from 'react';
+import { useQuery, useQueryClient } from '@tanstack/react-query';
+import { DashboardStats, LiveCounters, getDashboardStats, subscribeLiveStats } from '../api';
+
+const total = (counters: LiveCounters, counter: string) =>
+  Object.values(counters).reduce((sum, byCounter) => sum + (byCounter[counter] || 0), 0);
+
+// Applies one second of live counter deltas to the last full snapshot
+function applyDelta(stats: DashboardStats, delta: LiveCounters): DashboardStats {
+  const accepted = total(delta, 'ACCEPTED');
+  const sent = total(delta, 'SENT');
+  const failed = total(delta, 'FAILED');
+  const expired = total(delta, 'EXPIRED');
+  const pendingChange = accepted - sent - failed - expired;
+
+  const totalSent = (stats.totalSent || 0) + sent;
+  const totalFailed = (stats.totalFailed || 0) + failed;
+  const totalPending = Math.max(0, (stats.totalPending || 0) + pendingChange);
+  const all = totalSent + totalFailed + totalPending;
+
+  const byChannel = { ...stats.byChannel };
+  Object.entries(delta).forEach(([channel, byCounter]) => {
+    if (byCounter.ACCEPTED) byChannel[channel] = (byChannel[channel] || 0) + byCounter.ACCEPTED;
+  });
+
+  const byStatus = { ...stats.byStatus };
+  const bump = (status: string, change: number) => {
+    if (change) byStatus[status] = Math.max(0, (byStatus[status] || 0) + change);
+  };
+  bump('SENT', sent);
+  bump('FAILED', failed);
+  bump('EXPIRED', expired);
+  bump('PENDING', pendingChange);
+
+  return {
+    ...stats,
+    totalSent,
+    totalFailed,
+    totalPending,
+    successRate: all > 0 ? (totalSent / all) * 100 : 0,
+    byChannel,
+    byStatus,
+  };
+}
 
 function Dashboard() {
+  const queryClient = useQueryClient();
+  const [lastMinute, setLastMinute] = useState<LiveCounters | null>(null);
+
   const { data, isLoading, error } = useQuery({
     queryKey: ['dashboard-stats'],
     queryFn: () => getDashboardStats().then(res => res.data.data),
-    refetchInterval: 30000, // Refresh every 30 seconds
+    refetchInterval: 300000, // Live deltas arrive over SSE; full refresh every 5 minutes
   });
 
+  useEffect(() => {
+    const source = subscribeLiveStats((live) => {
+      setLastMinute(live.lastMinute);
+      if (Object.keys(live.delta).length > 0) {
+        queryClient.setQueryData<DashboardStats>(['dashboard-stats'],
+          (stats) => stats && applyDelta(stats, live.delta));
+      }
+    });
+    return () => source.close();
+  }, [queryClient]);
+
   if (isLoading) {
     return (
       <div className="loading">
@@ -33,6 +89,12 @@ function Dashboard() {
         <p style={{ color: 'var(--text-secondary)', marginTop: 5 }}>
           Статистика за последние 24 часа
         </p>
+        {lastMinute && (
+          <p style={{ color: 'var(--text-secondary)', marginTop: 5, fontSize: '0.85rem' }}>
+            🟢 За последнюю минуту: принято {total(lastMinute, 'ACCEPTED')},
+            отправлено {total(lastMinute, 'SENT')}, ошибок {total(lastMinute, 'FAILED')}
+          </p>
+        )}
       </header>
 
       {/* Stats Cards */}
@@ -1,18 +1,23 @@
 import { useState } from 'react';
 import { useQuery, useMutation, useQueryClient } from '@tanstack/react-query';
-import { getNotifications, retryNotification, NotificationDto } from '../api';
+import { getNotificationsByCursor, retryNotification, NotificationDto } from '../api';
 
 function NotificationList() {
-  const [page, setPage] = useState(0);
+  const [cursor, setCursor] = useState<string | undefined>();
+  const [total, setTotal] = useState<number | null>(null);
   const [statusFilter, setStatusFilter] = useState('');
   const [channelFilter, setChannelFilter] = useState('');
   const queryClient = useQueryClient();
 
   const { data, isLoading, error } = useQuery({
-    queryKey: ['notifications', page, statusFilter, channelFilter],
+    queryKey: ['notifications', cursor, statusFilter, channelFilter],
     queryFn: () =>
-      getNotifications(page, 20, statusFilter || undefined, channelFilter || undefined).then(
-        (res) => res.data.data
+      getNotificationsByCursor(cursor, 20, statusFilter || undefined, channelFilter || undefined).then(
+        (res) => {
+          // The estimate is only requested for the first page
+          if (res.data.data.approximateTotal != null) setTotal(res.data.data.approximateTotal);
+          return res.data.data;
+        }
       ),
   });
 
@@ -40,14 +45,13 @@ function NotificationList() {
   }
 
   const notifications = data?.content || [];
-  const totalPages = data?.totalPages || 0;
 
   return (
     <div>
       <header className="page-header">
         <h2>📋 Журнал уведомлений</h2>
         <p style={{ color: 'var(--text-secondary)', marginTop: 5 }}>
-          Всего записей: {data?.totalElements || 0}
+          Всего записей: ~{total ?? 0}
         </p>
       </header>
 
@@ -60,7 +64,7 @@ function NotificationList() {
               value={statusFilter}
               onChange={(e) => {
                 setStatusFilter(e.target.value);
-                setPage(0);
+                setCursor(undefined);
               }}
             >
               <option value="">Все</option>
@@ -79,7 +83,7 @@ function NotificationList() {
               value={channelFilter}
               onChange={(e) => {
                 setChannelFilter(e.target.value);
-                setPage(0);
+                setCursor(undefined);
               }}
             >
               <option value="">Все</option>
@@ -157,26 +161,17 @@ function NotificationList() {
         </div>
 
         {/* Pagination */}
-        {totalPages > 1 && (
+        {(data?.prevCursor || data?.nextCursor) && (
           <div className="pagination">
-            <button onClick={() => setPage(0)} disabled={page === 0}>
+            <button onClick={() => setCursor(undefined)} disabled={!cursor}>
               ⏮️ Начало
             </button>
-            <button onClick={() => setPage((p) => Math.max(0, p - 1))} disabled={page === 0}>
+            <button onClick={() => setCursor(data?.prevCursor || undefined)} disabled={!data?.prevCursor}>
               ◀️ Назад
             </button>
-            <span style={{ padding: '8px 16px' }}>
-              Страница {page + 1} из {totalPages}
-            </span>
-            <button
-              onClick={() => setPage((p) => Math.min(totalPages - 1, p + 1))}
-              disabled={page >= totalPages - 1}
-            >
+            <button onClick={() => setCursor(data?.nextCursor || undefined)} disabled={!data?.nextCursor}>
               Вперед ▶️
             </button>
-            <button onClick={() => setPage(totalPages - 1)} disabled={page >= totalPages - 1}>
-              Конец ⏭️
-            </button>
           </div>
         )}
       </div>
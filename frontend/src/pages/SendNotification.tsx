@@ -11,6 +11,8 @@ function SendNotification() {
     priority: 'NORMAL',
   });
 
+  const [apiKey, setApiKey] = useState(() => localStorage.getItem('apiKey') ?? '');
+
   const [result, setResult] = useState<{
     success: boolean;
     message: string;
@@ -18,7 +20,7 @@ function SendNotification() {
   } | null>(null);
 
   const mutation = useMutation({
-    mutationFn: sendNotification,
+    mutationFn: (data: SendNotificationRequest) => sendNotification(data, apiKey),
     onSuccess: (response) => {
       setResult({
         success: true,
@@ -37,6 +39,7 @@ function SendNotification() {
   const handleSubmit = (e: React.FormEvent) => {
     e.preventDefault();
     setResult(null);
+    localStorage.setItem('apiKey', apiKey);
     mutation.mutate(formData);
   };
 
@@ -61,6 +64,19 @@ function SendNotification() {
           <h3 className="card-title">Форма отправки</h3>
 
           <form onSubmit={handleSubmit}>
+            <div className="form-group">
+              <label htmlFor="apiKey">API ключ</label>
+              <input
+                type="password"
+                id="apiKey"
+                name="apiKey"
+                value={apiKey}
+                onChange={(e) => setApiKey(e.target.value)}
+                placeholder="ns_test_..."
+                required
+              />
+            </div>
+
             <div className="form-group">
               <label htmlFor="channel">Канал доставки</label>
               <select
@@ -0,0 +1,111 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local SMS gateway stub for tests and benchmarks, speaking the batch protocol of SmsService.
+ * <p>
+ * Run with the JDK alone: {@code java SmsStub.java [port] [latency-ms] [error-rate]}.
+ * Numbers that are not 7-15 digits (optionally with a leading +) are rejected per message;
+ * {@code error-rate} is the share of requests answered with 503 to exercise failover.
+ * Totals and throughput are printed every 5 seconds while traffic flows.
+ */
+public class SmsStub {
+
+    private static final Pattern MESSAGE = Pattern.compile(
+            "\\{\\s*\"id\"\\s*:\\s*\"([^\"]+)\"\\s*,\\s*\"to\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern VALID_NUMBER = Pattern.compile("\\+?\\d{7,15}");
+
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong accepted = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong failedRequests = new AtomicLong();
+    private static final AtomicLong sequence = new AtomicLong();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8091;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 256);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/sms/batch", exchange -> handle(exchange, latencyMs, errorRate));
+        server.start();
+        System.out.printf("SMS stub on http://localhost:%d/sms/batch (latency %d ms, error rate %.2f)%n",
+                port, latencyMs, errorRate);
+
+        long startedAt = System.nanoTime();
+        long reported = -1;
+        while (true) {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long total = accepted.get() + rejected.get();
+            if (total != reported) {
+                double seconds = (System.nanoTime() - startedAt) / 1e9;
+                System.out.printf("batches=%d accepted=%d rejected=%d failedRequests=%d avgBatch=%.1f rate=%.0f msg/s%n",
+                        batches.get(), accepted.get(), rejected.get(), failedRequests.get(),
+                        batches.get() > 0 ? (double) total / batches.get() : 0, total / seconds);
+                reported = total;
+            }
+        }
+    }
+
+    private static void handle(HttpExchange exchange, long latencyMs, double errorRate) throws IOException {
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            failedRequests.incrementAndGet();
+            respond(exchange, 503, "{\"error\":\"Gateway temporarily unavailable\"}");
+            return;
+        }
+
+        StringBuilder results = new StringBuilder("{\"results\":[");
+        Matcher m = MESSAGE.matcher(request);
+        boolean first = true;
+        while (m.find()) {
+            if (!first) {
+                results.append(',');
+            }
+            first = false;
+            if (VALID_NUMBER.matcher(m.group(2)).matches()) {
+                accepted.incrementAndGet();
+                results.append("{\"id\":\"").append(m.group(1))
+                        .append("\",\"status\":\"ACCEPTED\",\"messageId\":\"stub-")
+                        .append(sequence.incrementAndGet()).append("\"}");
+            } else {
+                rejected.incrementAndGet();
+                results.append("{\"id\":\"").append(m.group(1))
+                        .append("\",\"status\":\"REJECTED\",\"error\":\"Invalid number\"}");
+            }
+        }
+        results.append("]}");
+        batches.incrementAndGet();
+        respond(exchange, 200, results.toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
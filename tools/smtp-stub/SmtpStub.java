@@ -0,0 +1,144 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local SMTP server stub for tests and benchmarks of EmailService and its transport pool.
+ * <p>
+ * Run with the JDK alone: {@code java SmtpStub.java [port] [greeting-delay-ms] [message-delay-ms]}.
+ * {@code greeting-delay-ms} delays the 220 greeting of every new connection, standing in for the
+ * TCP/STARTTLS/AUTH handshake of a real provider; {@code message-delay-ms} delays the reply to each
+ * message. Any AUTH is accepted, STARTTLS is not offered, messages are discarded.
+ * Connections, messages and throughput are printed every 5 seconds while traffic flows.
+ */
+public class SmtpStub {
+
+    private static final AtomicLong connections = new AtomicLong();
+    private static final AtomicLong messages = new AtomicLong();
+    private static final AtomicLong open = new AtomicLong();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2525;
+        long greetingDelayMs = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        long messageDelayMs = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        ServerSocket server = new ServerSocket(port, 256);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        System.out.printf("SMTP stub on localhost:%d (greeting delay %d ms, message delay %d ms)%n",
+                port, greetingDelayMs, messageDelayMs);
+        Thread.ofPlatform().daemon().start(SmtpStub::report);
+
+        while (true) {
+            Socket socket = server.accept();
+            executor.execute(() -> handle(socket, greetingDelayMs, messageDelayMs));
+        }
+    }
+
+    private static void handle(Socket socket, long greetingDelayMs, long messageDelayMs) {
+        connections.incrementAndGet();
+        open.incrementAndGet();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            sleep(greetingDelayMs);
+            reply(out, "220 localhost ESMTP stub");
+
+            boolean inData = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (inData) {
+                    if (line.equals(".")) {
+                        inData = false;
+                        sleep(messageDelayMs);
+                        reply(out, "250 2.0.0 Ok: queued as " + messages.incrementAndGet());
+                    }
+                    continue;
+                }
+
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase(Locale.ROOT) : line.toUpperCase(Locale.ROOT);
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250-PIPELINING\r\n250-8BITMIME\r\n250 AUTH PLAIN LOGIN");
+                    case "HELO" -> reply(out, "250 localhost");
+                    case "AUTH" -> auth(line, in, out);
+                    case "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 2.0.0 Ok");
+                    case "DATA" -> {
+                        inData = true;
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 2.0.0 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 5.5.2 Command not recognized");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            open.decrementAndGet();
+        }
+    }
+
+    /**
+     * Accepts any credentials: AUTH PLAIN with or without an initial response, and AUTH LOGIN.
+     */
+    private static void auth(String line, BufferedReader in, OutputStream out) throws IOException {
+        String[] parts = line.split(" ");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase(Locale.ROOT) : "";
+        if (mechanism.equals("LOGIN")) {
+            if (parts.length < 3) {
+                reply(out, "334 VXNlcm5hbWU6");
+                in.readLine();
+            }
+            reply(out, "334 UGFzc3dvcmQ6");
+            in.readLine();
+        } else if (mechanism.equals("PLAIN") && parts.length < 3) {
+            reply(out, "334 ");
+            in.readLine();
+        }
+        reply(out, "235 2.7.0 Authentication successful");
+    }
+
+    private static void reply(OutputStream out, String text) throws IOException {
+        out.write((text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void report() {
+        long startedAt = System.nanoTime();
+        long reported = -1;
+        while (true) {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long total = messages.get();
+            if (total != reported) {
+                double seconds = (System.nanoTime() - startedAt) / 1e9;
+                System.out.printf("connections=%d open=%d messages=%d rate=%.0f msg/s%n",
+                        connections.get(), open.get(), total, total / seconds);
+                reported = total;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Local webhook receiver for tests and benchmarks of WebhookDispatcher.
+ * <p>
+ * Run with the JDK alone: {@code java WebhookStub.java [port] [latency-ms] [error-rate] [secret]}.
+ * With a secret, requests whose X-Webhook-Signature does not match are answered with 401.
+ * {@code error-rate} is the share of requests answered with 503 to exercise retries.
+ * Totals, the most concurrent requests seen and events per request are printed every 5 seconds.
+ */
+public class WebhookStub {
+
+    private static final Pattern EVENT = Pattern.compile("\"notificationId\"");
+
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong events = new AtomicLong();
+    private static final AtomicLong failedRequests = new AtomicLong();
+    private static final AtomicLong badSignatures = new AtomicLong();
+    private static final AtomicInteger concurrent = new AtomicInteger();
+    private static final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8092;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        String secret = args.length > 3 ? args[3] : null;
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 256);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> handle(exchange, latencyMs, errorRate, secret));
+        server.start();
+        System.out.printf("Webhook stub on http://localhost:%d/ (latency %d ms, error rate %.2f, signature %s)%n",
+                port, latencyMs, errorRate, secret != null ? "checked" : "ignored");
+
+        long reported = 0;
+        while (true) {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (requests.get() != reported) {
+                long ok = requests.get() - failedRequests.get() - badSignatures.get();
+                System.out.printf("requests=%d events=%d failed=%d badSignatures=%d maxConcurrent=%d avgEvents=%.1f%n",
+                        requests.get(), events.get(), failedRequests.get(), badSignatures.get(), maxConcurrent.get(),
+                        ok > 0 ? (double) events.get() / ok : 0);
+                reported = requests.get();
+            }
+        }
+    }
+
+    private static void handle(HttpExchange exchange, long latencyMs, double errorRate, String secret)
+            throws IOException {
+        int now = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(now, Math::max);
+        try {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (secret != null && !validSignature(exchange, body, secret)) {
+                badSignatures.incrementAndGet();
+                respond(exchange, 401);
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failedRequests.incrementAndGet();
+                respond(exchange, 503);
+                return;
+            }
+            events.addAndGet(EVENT.matcher(new String(body, StandardCharsets.UTF_8)).results().count());
+            respond(exchange, 204);
+        } finally {
+            concurrent.decrementAndGet();
+        }
+    }
+
+    private static boolean validSignature(HttpExchange exchange, byte[] body, String secret) {
+        String timestamp = exchange.getRequestHeaders().getFirst("X-Webhook-Timestamp");
+        String signature = exchange.getRequestHeaders().getFirst("X-Webhook-Signature");
+        if (timestamp == null || signature == null) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update((timestamp + ".").getBytes(StandardCharsets.UTF_8));
+            String expected = "sha256=" + HexFormat.of().formatHex(mac.doFinal(body));
+            return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                    signature.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.flush();
+        }
+    }
+}